@@ -0,0 +1,102 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.serialize.MetricEncoder;
+import com.mici.monitor.serialize.Payload;
+import com.mici.monitor.serialize.PayloadCompressor;
+import org.apache.http.entity.ByteArrayEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip请求体的生成：gzipEntity是HttpClient.post(apiPath, json)使用的GZIPOutputStream + ByteArrayEntity，
+ * payloadCompressor是发送线程使用的PayloadCompressor，复用Deflater和缓冲区。
+ * <pre>
+ * java -jar target/benchmarks.jar CompressBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressBenchmark {
+
+    @Param({"500", "5000"})
+    public int batchSize;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[] json;
+    private PayloadCompressor compressor;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Metric> batch = new ArrayList<Metric>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, String> tags = new HashMap<String, String>();
+            tags.put("host", "host-" + (i % 50));
+            batch.add(new Metric(SeriesKey.of("benchmark.compress", tags), (long) i));
+        }
+        Payload payload = new Payload();
+        new MetricEncoder().encode(batch, payload);
+        json = payload.toByteArray();
+        payload.release();
+        compressor = new PayloadCompressor(level, Deflater.DEFAULT_STRATEGY, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        compressor.end();
+    }
+
+    @Benchmark
+    public ByteArrayEntity gzipEntity() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(baos) {
+            {
+                def.setLevel(level);
+            }
+        };
+        gzip.write(json);
+        gzip.close();
+        ByteArrayEntity entity = new ByteArrayEntity(baos.toByteArray());
+        entity.setContentType("application/json");
+        entity.setContentEncoding("gzip");
+        return entity;
+    }
+
+    @Benchmark
+    public int payloadCompressor() throws IOException {
+        Payload payload = new Payload();
+        compressor.begin(payload);
+        compressor.write(json, 0, json.length);
+        compressor.finish();
+        int size = payload.size();
+        payload.release();
+        return size;
+    }
+}
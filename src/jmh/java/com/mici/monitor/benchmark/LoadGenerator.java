@@ -0,0 +1,211 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.exception.BufferQueueFullException;
+import com.mici.monitor.queue.QueueType;
+import com.mici.monitor.stats.ClientStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测驱动：启动StubTsdbServer，按固定速率通过Sender写入数据点，每秒输出一次吞吐、丢弃数、队列深度和堆内存。
+ * 参数都是 --name=value 的形式，例如模拟后端变慢时的积压：
+ * <pre>
+ * java -cp target/benchmarks.jar com.mici.monitor.benchmark.LoadGenerator --rate=200000 --latency=200 --duration=30
+ * </pre>
+ * 参数：series、rate（每秒数据点）、duration（秒）、threads、endpoints，
+ * 桩服务的latency（毫秒）、errorRate、resetRate，
+ * 客户端的queue（ARRAY_BLOCKING/RING_BUFFER）、bufferSize、consumers、batchSize、retry、
+ * asyncSend、compress、binary、backpressure、adaptive。
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int series = intOption(options, "series", 1000);
+        int rate = intOption(options, "rate", 100000);
+        int duration = intOption(options, "duration", 30);
+        int threads = intOption(options, "threads", 4);
+        int endpoints = intOption(options, "endpoints", 1);
+
+        List<StubTsdbServer> servers = new ArrayList<StubTsdbServer>();
+        for (int i = 0; i < endpoints; i++) {
+            servers.add(new StubTsdbServer(0)
+                    .latency(intOption(options, "latency", 0))
+                    .errorRate(doubleOption(options, "errorRate", 0))
+                    .resetRate(doubleOption(options, "resetRate", 0))
+                    .start());
+        }
+
+        MonitorConfig.Builder builder = MonitorConfig.address("127.0.0.1", servers.get(0).getPort())
+                .queueType(QueueType.valueOf(stringOption(options, "queue", QueueType.ARRAY_BLOCKING.name())))
+                .batchPutBufferSize(intOption(options, "bufferSize", 10000))
+                .batchPutConsumerThreadCount(intOption(options, "consumers", 1))
+                .batchPutSize(intOption(options, "batchSize", 500))
+                .batchPutRetryCount(intOption(options, "retry", 0))
+                .asyncSend(booleanOption(options, "asyncSend", false))
+                .backpressure(booleanOption(options, "backpressure", false))
+                .adaptiveBatch(booleanOption(options, "adaptive", false));
+        for (int i = 1; i < servers.size(); i++) {
+            builder.endpoint("127.0.0.1", servers.get(i).getPort());
+        }
+        if (booleanOption(options, "compress", false)) {
+            builder.openHttpCompress();
+        }
+        if (booleanOption(options, "binary", false)) {
+            builder.openBinaryPut();
+        }
+        Sender sender = new Sender(builder.config());
+
+        SeriesKey[] keys = new SeriesKey[series];
+        for (int i = 0; i < series; i++) {
+            Map<String, String> tags = new HashMap<String, String>();
+            tags.put("host", "host-" + (i % 1000));
+            tags.put("series", String.valueOf(i));
+            keys[i] = SeriesKey.of("load.generator", tags);
+        }
+
+        System.out.printf("series=%d rate=%d/s duration=%ds threads=%d endpoints=%d%n", series, rate, duration, threads, endpoints);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread producer = new Thread(new Producer(sender, keys, i, threads, rate / threads, deadline, done), "Load-Generator-" + i);
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        ClientStats stats = sender.getStats();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long lastEnqueued = 0;
+        long lastReceived = 0;
+        long start = System.nanoTime();
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            long enqueued = stats.getPointsEnqueued();
+            long received = received(servers);
+            System.out.printf("%4ds enqueued=%d/s received=%d/s dropped=%d queueFull=%d queueDepth=%d retries=%d httpFailures=%d heap=%dMB%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start),
+                    enqueued - lastEnqueued, received - lastReceived, stats.getPointsDropped(), stats.getQueueFull(),
+                    stats.getQueueDepth(), stats.getRetries(), stats.getHttpFailures(),
+                    memory.getHeapMemoryUsage().getUsed() >> 20);
+            lastEnqueued = enqueued;
+            lastReceived = received;
+        }
+
+        long closeStart = System.nanoTime();
+        sender.close();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("closed in %dms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - closeStart));
+        System.out.printf("total: enqueued=%d sent=%d received=%d dropped=%d requests=%d avgLatency=%.2fms throughput=%.0f points/s%n",
+                stats.getPointsEnqueued(), stats.getPointsSent(), received(servers), stats.getPointsDropped(),
+                stats.getHttpRequests(),
+                stats.getHttpRequests() == 0 ? 0 : stats.getHttpLatencyNanos() / 1000000.0 / stats.getHttpRequests(),
+                stats.getPointsSent() * 1e9 / elapsed);
+        for (StubTsdbServer server : servers) {
+            server.close();
+        }
+    }
+
+    private static long received(List<StubTsdbServer> servers) {
+        long received = 0;
+        for (StubTsdbServer server : servers) {
+            received += server.getPoints();
+        }
+        return received;
+    }
+
+    private static class Producer implements Runnable {
+        private final Sender sender;
+        private final SeriesKey[] keys;
+        private final int offset;
+        private final int step;
+        private final int rate;
+        private final long deadline;
+        private final CountDownLatch done;
+
+        Producer(Sender sender, SeriesKey[] keys, int offset, int step, int rate, long deadline, CountDownLatch done) {
+            this.sender = sender;
+            this.keys = keys;
+            this.offset = offset;
+            this.step = step;
+            this.rate = rate;
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long start = System.nanoTime();
+                long sent = 0;
+                int index = offset;
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        break;
+                    }
+                    // 按经过的时间计算应发出的数据点数，落后时补发
+                    long expected = (now - start) * rate / 1000000000L;
+                    if (sent >= expected) {
+                        LockSupport.parkNanos(100000);
+                        continue;
+                    }
+                    for (; sent < expected; sent++) {
+                        try {
+                            sender.record(keys[index], sent);
+                        } catch (BufferQueueFullException e) {
+                            // 已经计入ClientStats
+                        }
+                        index += step;
+                        if (index >= keys.length) {
+                            index = offset % Math.max(1, keys.length);
+                        }
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected --name=value");
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static String stringOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static boolean booleanOption(Map<String, String> options, String name, boolean defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.queue.DataQueue;
+import com.mici.monitor.queue.DataQueueFactory;
+import com.mici.monitor.queue.QueueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个生产者写入队列，一个消费者线程按批次取出，和SendRannable的消费方式相同。
+ * 生产者线程数由 -t 指定，main方法依次运行1到64个生产者线程并打开 -prof gc：
+ * <pre>
+ * java -cp target/benchmarks.jar com.mici.monitor.benchmark.QueueBenchmark
+ * java -jar target/benchmarks.jar QueueBenchmark -t 16 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"ARRAY_BLOCKING", "RING_BUFFER"})
+    public QueueType queueType;
+
+    private DataQueue queue;
+    private Thread consumer;
+    private volatile boolean running;
+
+    @State(Scope.Thread)
+    public static class Producer {
+        Metric metric;
+
+        @Setup
+        public void setup() {
+            metric = new Metric(SeriesKey.of("benchmark.queue"), 1L);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MonitorConfig config = MonitorConfig.address("127.0.0.1")
+                .batchPutBufferSize(10000)
+                .queueType(queueType)
+                .config();
+        queue = DataQueueFactory.createDataQueue(config);
+        running = true;
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<Metric> batch = new ArrayList<Metric>(500);
+                while (running) {
+                    batch.clear();
+                    try {
+                        queue.drainTo(batch, 500, 10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "benchmark-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        consumer.join();
+    }
+
+    @Benchmark
+    public void send(Producer producer) {
+        queue.send(producer.metric);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(QueueBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        }
+    }
+}
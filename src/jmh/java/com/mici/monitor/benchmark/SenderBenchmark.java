@@ -0,0 +1,111 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.client.Sender;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端吞吐：Sender.put经过队列、序列化、HTTP发送到本地的桩服务，队列满时背压限制写入速度，
+ * 因此测得的是整条链路的持续吞吐。
+ * <pre>
+ * java -jar target/benchmarks.jar SenderBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@Fork(1)
+public class SenderBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    @Param({"false", "true"})
+    public boolean asyncSend;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Sender sender;
+
+    @State(Scope.Thread)
+    public static class Series {
+        SeriesKey key;
+        long value;
+
+        @Setup
+        public void setup() {
+            Map<String, String> tags = new HashMap<String, String>();
+            tags.put("thread", Thread.currentThread().getName());
+            key = SeriesKey.of("benchmark.sender", tags);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                byte[] buf = new byte[8192];
+                while (in.read(buf) >= 0) {
+                    // 丢弃请求体
+                }
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        MonitorConfig.Builder builder = MonitorConfig.address("127.0.0.1", server.getAddress().getPort())
+                .asyncSend(asyncSend);
+        if (compress) {
+            builder.openHttpCompress();
+        }
+        sender = new Sender(builder.config());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sender.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void put(Series series) {
+        sender.record(series.key, series.value++);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.serialize.BinaryMetricEncoder;
+import com.mici.monitor.serialize.MetricEncoder;
+import com.mici.monitor.serialize.Payload;
+import com.mici.monitor.serialize.PayloadCompressor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 一个批次的序列化，和SendRannable.serialize相同：编码到Payload，compress时经过PayloadCompressor。
+ * seriesKey为true时数据点由SeriesKey创建，直接拷贝序列化好的前缀；binary为true时使用BinaryMetricEncoder。
+ * <pre>
+ * java -jar target/benchmarks.jar SerializeBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Param({"100", "500", "5000"})
+    public int batchSize;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    @Param({"false", "true"})
+    public boolean seriesKey;
+
+    @Param({"false", "true"})
+    public boolean binary;
+
+    private List<Metric> batch;
+    private MetricEncoder encoder;
+    private BinaryMetricEncoder binaryEncoder;
+    private PayloadCompressor compressor;
+
+    @Setup
+    public void setup() {
+        batch = new ArrayList<Metric>(batchSize);
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, String> tags = new HashMap<String, String>();
+            tags.put("host", "host-" + (i % 50));
+            tags.put("dc", "dc-" + (i % 3));
+            double value = i * 1.5;
+            Metric metric = seriesKey ? new Metric(SeriesKey.of("benchmark.serialize", tags), value)
+                    : new Metric("benchmark.serialize", value, tags);
+            // 每条时间线每秒一个点
+            metric.setTimestamp(timestamp + i / 150 * 1000);
+            batch.add(metric);
+        }
+        encoder = new MetricEncoder();
+        binaryEncoder = new BinaryMetricEncoder();
+        compressor = new PayloadCompressor(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        compressor.end();
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        Payload payload = new Payload();
+        if (compress) {
+            compressor.begin(payload);
+            encode(compressor);
+            compressor.finish();
+        } else {
+            encode(payload);
+        }
+        int size = payload.size();
+        payload.release();
+        return size;
+    }
+
+    private void encode(OutputStream out) throws IOException {
+        if (binary) {
+            binaryEncoder.encode(batch, out);
+        } else {
+            encoder.encode(batch, out);
+        }
+    }
+}
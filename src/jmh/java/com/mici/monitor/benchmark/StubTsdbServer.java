@@ -0,0 +1,520 @@
+package com.mici.monitor.benchmark;
+
+import com.mici.monitor.serialize.BinaryMetricDecoder;
+import com.mici.monitor.serialize.BinaryMetricEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 本地的OpenTSDB /api/put 桩服务，单线程NIO，支持keep-alive、Content-Length和chunked请求体、gzip压缩。
+ * Content-Type为BinaryMetricEncoder.CONTENT_TYPE的请求体用BinaryMetricDecoder解码，无法解码时返回400。
+ * 只统计收到的数据点，不保存数据。可以注入响应延迟、错误响应和连接重置：
+ * <ul>
+ * <li>latency：每个请求延迟多少毫秒响应，延迟期间不占用IO线程；</li>
+ * <li>errorRate：按概率返回500；</li>
+ * <li>resetRate：按概率不响应，直接以RST关闭连接。</li>
+ * </ul>
+ */
+public class StubTsdbServer implements Closeable {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] METRIC_FIELD = "\"metric\":".getBytes(ASCII);
+    private static final byte[] NO_CONTENT = "HTTP/1.1 204 No Content\r\n\r\n".getBytes(ASCII);
+    private static final byte[] SERVER_ERROR = "HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\n\r\n".getBytes(ASCII);
+    private static final byte[] NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(ASCII);
+    private static final byte[] BAD_REQUEST = "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(ASCII);
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ScheduledExecutorService delayer;
+    private final ConcurrentLinkedQueue<Runnable> ioTasks = new ConcurrentLinkedQueue<Runnable>();
+    private Thread ioThread;
+    private volatile boolean running;
+
+    private volatile long latency;
+    private volatile double errorRate;
+    private volatile double resetRate;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder points = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    /**
+     * @param port 0 表示随机端口
+     */
+    public StubTsdbServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.delayer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Stub-Tsdb-Delay");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public StubTsdbServer latency(long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public StubTsdbServer errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public StubTsdbServer resetRate(double resetRate) {
+        this.resetRate = resetRate;
+        return this;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * 收到的数据点数，包括返回500的请求中的数据点
+     */
+    public long getPoints() {
+        return points.sum();
+    }
+
+    /**
+     * 收到的请求体字节数（解压前）
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getResets() {
+        return resets.sum();
+    }
+
+    public synchronized StubTsdbServer start() {
+        if (ioThread != null) {
+            return this;
+        }
+        running = true;
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "Stub-Tsdb-IO");
+        ioThread.setDaemon(true);
+        ioThread.start();
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (ioThread != null) {
+            try {
+                ioThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        delayer.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                selector.select(100);
+                Runnable task;
+                while ((task = ioTasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    } catch (RuntimeException e) {
+                        // 格式错误的请求只关闭这个连接，不能让IO线程退出
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).badRequest();
+                        } else {
+                            key.cancel();
+                            key.channel().close();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // 继续处理其他连接
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    private void handle(final Connection connection, Request request) throws IOException {
+        requests.increment();
+        bytes.add(request.body.length);
+
+        if (!request.path.startsWith("/api/put")) {
+            connection.respond(NOT_FOUND);
+            return;
+        }
+        long count;
+        try {
+            count = countPoints(request);
+        } catch (IOException e) {
+            connection.badRequest();
+            return;
+        }
+        points.add(count);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (resetRate > 0 && random.nextDouble() < resetRate) {
+            resets.increment();
+            connection.reset();
+            return;
+        }
+
+        final byte[] response;
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            errors.increment();
+            response = SERVER_ERROR;
+        } else {
+            response = NO_CONTENT;
+        }
+
+        long delay = latency;
+        if (delay <= 0) {
+            connection.respond(response);
+            return;
+        }
+        delayer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ioTasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            connection.respond(response);
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                });
+                selector.wakeup();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static long countPoints(Request request) throws IOException {
+        byte[] body = request.body;
+        if ("gzip".equalsIgnoreCase(request.headers.get("content-encoding"))) {
+            body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+        }
+        String contentType = request.headers.get("content-type");
+        if (contentType != null && contentType.startsWith(BinaryMetricEncoder.CONTENT_TYPE)) {
+            return BinaryMetricDecoder.decode(new ByteArrayInputStream(body)).size();
+        }
+        long count = 0;
+        for (int i = indexOf(body, METRIC_FIELD, 0, body.length); i >= 0;
+             i = indexOf(body, METRIC_FIELD, i + METRIC_FIELD.length, body.length)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static class Request {
+        String path;
+        Map<String, String> headers = new HashMap<String, String>();
+        byte[] body;
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        private byte[] data = new byte[64 * 1024];
+        private int length;
+        private ByteBuffer pendingWrite;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            while (true) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                if (n == 0) {
+                    break;
+                }
+                readBuffer.flip();
+                append(readBuffer);
+            }
+
+            Request request;
+            while (key.isValid() && (request = parse()) != null) {
+                handle(this, request);
+            }
+        }
+
+        private void append(ByteBuffer buffer) {
+            int n = buffer.remaining();
+            if (length + n > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + n));
+            }
+            buffer.get(data, length, n);
+            length += n;
+        }
+
+        /**
+         * 缓冲区中有完整的请求时取出，否则返回null
+         */
+        private Request parse() throws IOException {
+            int headerEnd = indexOf(data, "\r\n\r\n".getBytes(ASCII), 0, length);
+            if (headerEnd < 0) {
+                return null;
+            }
+
+            Request request = new Request();
+            String[] lines = new String(data, 0, headerEnd, ASCII).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length < 2) {
+                badRequest();
+                return null;
+            }
+            request.path = requestLine[1];
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    request.headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+                }
+            }
+
+            int bodyStart = headerEnd + 4;
+            int consumed;
+            String contentLength = request.headers.get("content-length");
+            if ("chunked".equalsIgnoreCase(request.headers.get("transfer-encoding"))) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                consumed = parseChunked(bodyStart, body);
+                if (consumed < 0) {
+                    return null;
+                }
+                request.body = body.toByteArray();
+            } else {
+                int size = contentLength == null ? 0 : parseSize(contentLength, 10);
+                if (size < 0) {
+                    badRequest();
+                    return null;
+                }
+                if (length - bodyStart < size) {
+                    return null;
+                }
+                request.body = Arrays.copyOfRange(data, bodyStart, bodyStart + size);
+                consumed = bodyStart + size;
+            }
+
+            System.arraycopy(data, consumed, data, 0, length - consumed);
+            length -= consumed;
+            return request;
+        }
+
+        /**
+         * @return 请求结束的位置，数据不完整时返回-1
+         */
+        private int parseChunked(int pos, ByteArrayOutputStream body) throws IOException {
+            byte[] crlf = "\r\n".getBytes(ASCII);
+            while (true) {
+                int lineEnd = indexOf(data, crlf, pos, length);
+                if (lineEnd < 0) {
+                    return -1;
+                }
+                String sizeLine = new String(data, pos, lineEnd - pos, ASCII);
+                int semicolon = sizeLine.indexOf(';');
+                int size = parseSize(semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine, 16);
+                if (size < 0) {
+                    badRequest();
+                    return -1;
+                }
+                pos = lineEnd + 2;
+                if (size == 0) {
+                    // 跳过trailer，直到空行
+                    while (true) {
+                        int end = indexOf(data, crlf, pos, length);
+                        if (end < 0) {
+                            return -1;
+                        }
+                        if (end == pos) {
+                            return end + 2;
+                        }
+                        pos = end + 2;
+                    }
+                }
+                if (length - pos < size + 2) {
+                    return -1;
+                }
+                body.write(data, pos, size);
+                pos += size + 2;
+            }
+        }
+
+        /**
+         * @return 不是合法的非负整数时返回-1
+         */
+        private int parseSize(String value, int radix) {
+            try {
+                return Math.max(-1, Integer.parseInt(value.trim(), radix));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private void badRequest() throws IOException {
+            try {
+                respond(BAD_REQUEST);
+            } finally {
+                close();
+            }
+        }
+
+        void respond(byte[] response) throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            pendingWrite = ByteBuffer.wrap(response);
+            flush();
+        }
+
+        void flush() throws IOException {
+            if (pendingWrite == null) {
+                return;
+            }
+            channel.write(pendingWrite);
+            if (pendingWrite.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else {
+                pendingWrite = null;
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        /**
+         * SO_LINGER为0时close()发送RST
+         */
+        void reset() {
+            try {
+                channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            } catch (IOException e) {
+                // 直接关闭
+            }
+            close();
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
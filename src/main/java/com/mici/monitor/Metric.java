@@ -2,6 +2,8 @@ package com.mici.monitor;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.mici.monitor.clock.Clocks;
+import com.mici.monitor.queue.Acknowledgement;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -12,11 +14,24 @@ public class Metric {
 
     private String name;
     private long timestamp;
+    private ValueType valueType;
+    private long longValue;
+    private double doubleValue;
     private Object value;
-    private Map<String,String> tags = Maps.newHashMap();
+    // 由SeriesKey创建的Metric在修改tags之前不持有自己的map
+    private Map<String,String> tags;
+    private SeriesKey seriesKey;
     private String granularity;
     private String json;
     private Long version;
+    // 为空时按配置的指标名前缀决定
+    private Priority priority;
+    // 从磁盘回放的一批数据点中，最后一个数据点带有这一批的确认
+    private Acknowledgement acknowledgement;
+    // 来自MetricPool的对象，release()时归还
+    private final MetricPool pool;
+    // 已经归还到池中，重复调用release()不会再次归还
+    boolean released;
 
     public Metric(String name,Object value){
         this(name,value,new HashMap<String,String>());
@@ -25,36 +40,184 @@ public class Metric {
 
     public Metric(String name,Object value,Map<String,String> tags){
         this.name = name;
-        this.value = value;
-        this.tags.putAll(tags);
-        this.timestamp = System.currentTimeMillis();
+        this.setValue(value);
+        this.tags = Maps.newHashMap(tags);
+        this.timestamp = Clocks.currentTimeMillis();
+        this.pool = null;
 
     }
 
+    public Metric(String name,long value){
+        this(name,value,new HashMap<String,String>());
+    }
+
+    public Metric(String name,long value,Map<String,String> tags){
+        this.name = name;
+        this.setValue(value);
+        this.tags = Maps.newHashMap(tags);
+        this.timestamp = Clocks.currentTimeMillis();
+        this.pool = null;
+    }
+
+    public Metric(String name,double value){
+        this(name,value,new HashMap<String,String>());
+    }
+
+    public Metric(String name,double value,Map<String,String> tags){
+        this.name = name;
+        this.setValue(value);
+        this.tags = Maps.newHashMap(tags);
+        this.timestamp = Clocks.currentTimeMillis();
+        this.pool = null;
+    }
+
+    public Metric(SeriesKey seriesKey,Object value){
+        this(seriesKey);
+        this.setValue(value);
+    }
+
+    public Metric(SeriesKey seriesKey,long value){
+        this(seriesKey);
+        this.setValue(value);
+    }
+
+    public Metric(SeriesKey seriesKey,double value){
+        this(seriesKey);
+        this.setValue(value);
+    }
+
+    private Metric(SeriesKey seriesKey){
+        this.name = seriesKey.getName();
+        this.seriesKey = seriesKey;
+        this.timestamp = Clocks.currentTimeMillis();
+        this.pool = null;
+    }
+
+    Metric(MetricPool pool){
+        this.pool = pool;
+        this.valueType = ValueType.LONG;
+    }
+
+    /**
+     * 复用当前对象记录一个新的数据点，清空之前的tags、granularity和version
+     */
+    public Metric reset(SeriesKey seriesKey,long value){
+        resetSeries(seriesKey);
+        this.setValue(value);
+        return this;
+    }
+
+    public Metric reset(SeriesKey seriesKey,double value){
+        resetSeries(seriesKey);
+        this.setValue(value);
+        return this;
+    }
+
+    private void resetSeries(SeriesKey seriesKey){
+        this.name = seriesKey.getName();
+        this.seriesKey = seriesKey;
+        this.tags = null;
+        this.granularity = null;
+        this.json = null;
+        this.version = null;
+        this.priority = null;
+        this.timestamp = Clocks.currentTimeMillis();
+    }
+
+    /**
+     * 数据点已经序列化或写入磁盘后由消费者调用，对象来自MetricPool时归还到池中，之后不能再使用。
+     * 重复调用只归还一次。
+     */
+    public void release(){
+        if (pool != null && !released) {
+            this.released = true;
+            this.seriesKey = null;
+            this.tags = null;
+            this.value = null;
+            this.acknowledgement = null;
+            pool.recycle(this);
+        }
+    }
+
     public Metric addTag(String name ,String value){
         Preconditions.checkArgument(StringUtils.isNotEmpty(name));
         Preconditions.checkArgument(StringUtils.isNotEmpty(value));
-        tags.put(name,value);
+        mutableTags().put(name,value);
 
         return this;
     }
 
     public Metric addTags(Map<String,String> tags){
         Preconditions.checkArgument(MapUtils.isNotEmpty(tags));
-        this.tags.putAll(tags);
+        mutableTags().putAll(tags);
         return this;
     }
 
+    private Map<String,String> mutableTags(){
+        if (tags == null) {
+            tags = Maps.newHashMap(seriesKey.getTags());
+        }
+        seriesKey = null;
+        return tags;
+    }
+
     public void setName(String name) {
+        mutableTags();
         this.name = name;
     }
 
+    /**
+     * 把数据点改为属于seriesKey这条时间线，之前的name和tags被替换
+     */
+    public void setSeriesKey(SeriesKey seriesKey) {
+        this.name = seriesKey.getName();
+        this.seriesKey = seriesKey;
+        this.tags = null;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * 不为空时，这个数据点和同一批之前的数据点发送完成后要调用acknowledge()
+     */
+    public Acknowledgement getAcknowledgement() {
+        return acknowledgement;
+    }
+
+    public void setAcknowledgement(Acknowledgement acknowledgement) {
+        this.acknowledgement = acknowledgement;
+    }
+
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
 
+    /**
+     * 整数和浮点数会拆箱后以基本类型保存
+     */
     public void setValue(Object value) {
-        this.value = value;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            setValue(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            setValue(((Number) value).doubleValue());
+        } else {
+            this.valueType = ValueType.OBJECT;
+            this.value = value;
+        }
+    }
+
+    public void setValue(long value) {
+        this.valueType = ValueType.LONG;
+        this.longValue = value;
+        this.value = null;
+    }
+
+    public void setValue(double value) {
+        this.valueType = ValueType.DOUBLE;
+        this.doubleValue = value;
+        this.value = null;
     }
 
     public void setGranularity(String granularity) {
@@ -77,14 +240,66 @@ public class Metric {
         return timestamp;
     }
 
+    /**
+     * 兼容旧接口，LONG和DOUBLE类型会装箱，热路径请使用getValueType()和对应的基本类型getter
+     */
     public Object getValue() {
-        return value;
+        switch (valueType) {
+            case LONG:
+                return longValue;
+            case DOUBLE:
+                return doubleValue;
+            default:
+                return value;
+        }
+    }
+
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    public long getLongValue() {
+        return longValue;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
     }
 
     public Map<String, String> getTags() {
+        if (tags == null) {
+            return seriesKey.getTags();
+        }
         return tags;
     }
 
+    /**
+     * 已关联的SeriesKey，修改name或tags后会解除关联，返回null
+     */
+    public SeriesKey getSeriesKey() {
+        return seriesKey;
+    }
+
+    /**
+     * 返回驻留的SeriesKey，没有时按当前name和tags查找并缓存
+     */
+    public SeriesKey toSeriesKey() {
+        if (seriesKey == null) {
+            seriesKey = SeriesKey.of(name, tags);
+        }
+        return seriesKey;
+    }
+
+    /**
+     * 时间线（name + tags）的hash，与SeriesKey.hashCode()相同，不需要创建SeriesKey，用于分片路由
+     */
+    public int seriesHash() {
+        if (seriesKey != null) {
+            return seriesKey.hashCode();
+        }
+        return SeriesKey.hash(name, tags);
+    }
+
     public String getGranularity() {
         return granularity;
     }
@@ -93,6 +308,10 @@ public class Metric {
         return json;
     }
 
+    public Priority getPriority() {
+        return priority;
+    }
+
     public Long getVersion() {
         return version;
     }
@@ -0,0 +1,35 @@
+package com.mici.monitor;
+
+import com.mici.monitor.queue.RingBuffer;
+
+/**
+ * 预分配的Metric对象池。生产者通过claim()取出Metric并填充，消费者序列化之后调用Metric.release()归还，
+ * 稳定状态下记录数据点不产生垃圾。池为空时临时创建新对象，归还时池满则交给GC回收。
+ */
+public class MetricPool {
+    private final RingBuffer<Metric> free;
+
+    public MetricPool(int size) {
+        this.free = new RingBuffer<Metric>(size);
+        for (int i = 0; i < free.capacity(); i++) {
+            free.offer(new Metric(this));
+        }
+    }
+
+    public Metric claim() {
+        Metric metric = free.poll();
+        if (metric == null) {
+            metric = new Metric(this);
+        }
+        metric.released = false;
+        return metric;
+    }
+
+    void recycle(Metric metric) {
+        free.offer(metric);
+    }
+
+    public int available() {
+        return free.size();
+    }
+}
@@ -1,5 +1,23 @@
 package com.mici.monitor;
 
+import com.mici.monitor.aggregate.RollupAggregation;
+import com.mici.monitor.aggregate.RollupRule;
+import com.mici.monitor.cardinality.CardinalityPolicy;
+import com.mici.monitor.clock.Clock;
+import com.mici.monitor.http.Endpoint;
+import com.mici.monitor.http.HttpURL;
+import com.mici.monitor.queue.ParkingWaitStrategy;
+import com.mici.monitor.queue.QueueType;
+import com.mici.monitor.queue.WaitStrategy;
+import com.mici.monitor.sendPool.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
 public class MonitorConfig {
     public static class Builder {
         public static volatile boolean ProducerThreadSerializeSwitch = false;
@@ -10,14 +28,42 @@ public class MonitorConfig {
         private int batchPutBufferSize = 10000;
         private int batchPutConsumerThreadCount = 1;
         private int batchPutRetryCount = 0;
+        private int batchPutRetryBufferSize = 100; // 同时等待重试的批次数
+        private int batchPutRetryBackoff = 100; // 单位：毫秒
+        private int batchPutRetryMaxBackoff = 10000; // 单位：毫秒
         private int batchPutSize = 500;
         private int batchPutTimeLimit = 300;
+        private boolean adaptiveBatch = false; // 打开后批次大小和等待时间在下面的范围内自动调整
+        private int adaptiveBatchMinSize = 50;
+        private int adaptiveBatchMaxSize = 5000;
+        private int adaptiveBatchMinTimeLimit = 1; // 单位：毫秒
+        private int adaptiveBatchMaxTimeLimit = 300; // 单位：毫秒
+        private int adaptiveBatchMaxPayloadSize = 4 * 1024 * 1024; // 单位：字节
         private int maxTPS = -1;
+        private int aggregateFlushInterval = 1000; // 单位：毫秒
+        private int metricPoolSize = 0; // 0 表示不复用Metric对象
+        private double[] histogramPercentiles = {50, 90, 99, 99.9};
+        private Map<String, RollupRule> rollupRules = new LinkedHashMap<String, RollupRule>(); // 指标名前缀对应的rollup规则
+        private int cardinalityLimit = 0; // 每个指标名最多的时间线数量，0 表示不限制
+        private CardinalityPolicy cardinalityPolicy = CardinalityPolicy.DROP;
+        private int cardinalityMaxNames = 10000; // 最多跟踪的指标名数量
+        private int cardinalityResetInterval = 3600000; // 单位：毫秒，清空已接纳时间线的间隔
+        private boolean clientStatsReport = false; // 把客户端内部统计上报到 monitor.client. 开头的指标
+        private Clock clock; // 为空表示使用Clocks共享的时钟
+        private int clockResolution = 1; // 单位：毫秒，共享时钟的刷新间隔
+        private int[] priorityWeights; // 为空表示不分优先级通道，顺序同Priority
+        private Map<String, Priority> priorityPrefixes = new LinkedHashMap<String, Priority>(); // 指标名前缀对应的优先级
 
         private String host;
         private int port = 8242;
+        private List<Endpoint> endpoints = new ArrayList<Endpoint>(); // host/port之外的其他节点
+        private int shardVirtualNodes = 160; // 每个节点在一致性哈希环上的虚拟节点数
 
         private boolean httpCompress = false;
+        private int httpCompressLevel = Deflater.DEFAULT_COMPRESSION;
+        private int httpCompressStrategy = Deflater.DEFAULT_STRATEGY;
+        private int httpCompressThreshold = 1024; // 单位：字节，小于该大小的请求体不压缩
+        private String binaryPutPath; // 为空表示使用JSON格式
         private int httpConnectionPool = 64; // 每个Host分配的连接数
         private int httpConnectTimeout = 90; // 单位：秒
         private int httpConnectionLiveTime = 0; // 单位：秒
@@ -26,6 +72,14 @@ public class MonitorConfig {
         private int ioThreadCount = 1;
         private boolean backpressure = true;
         private boolean asyncPut = true;
+        private boolean asyncSend = false;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private QueueType queueType = QueueType.ARRAY_BLOCKING;
+        private WaitStrategy waitStrategy = new ParkingWaitStrategy();
+        private String spillDirectory; // 为空表示不溢出到磁盘
+        private double spillHighWaterMark = 0.8; // 内存队列使用比例超过该值后溢出到磁盘
+        private int spillSegmentSize = 64 * 1024 * 1024; // 单位：字节
+        private int spillMaxSegments = 16; // 段文件循环复用；段用完后按backpressure阻塞或抛出BufferQueueFullException
 
         public Builder(String host) {
             this.host = host;
@@ -57,6 +111,23 @@ public class MonitorConfig {
             return this;
         }
 
+        public Builder batchPutRetryBufferSize(int batchPutRetryBufferSize) {
+            if (batchPutRetryBufferSize <= 0) {
+                throw new IllegalArgumentException("The batchPutRetryBufferSize con't be less then 1");
+            }
+            this.batchPutRetryBufferSize = batchPutRetryBufferSize;
+            return this;
+        }
+
+        public Builder batchPutRetryBackoff(int batchPutRetryBackoff, int batchPutRetryMaxBackoff) {
+            if (batchPutRetryBackoff <= 0 || batchPutRetryMaxBackoff < batchPutRetryBackoff) {
+                throw new IllegalArgumentException("The batchPutRetryBackoff must be positive and not greater than batchPutRetryMaxBackoff");
+            }
+            this.batchPutRetryBackoff = batchPutRetryBackoff;
+            this.batchPutRetryMaxBackoff = batchPutRetryMaxBackoff;
+            return this;
+        }
+
         public Builder batchPutSize(int batchPutSize) {
             this.batchPutSize = batchPutSize;
             return this;
@@ -67,6 +138,40 @@ public class MonitorConfig {
             return this;
         }
 
+        /**
+         * 根据队列积压、请求往返时间和请求体大小自动调整批次大小和等待时间，batchPutSize和batchPutTimeLimit作为初始值
+         */
+        public Builder adaptiveBatch(boolean adaptiveBatch) {
+            this.adaptiveBatch = adaptiveBatch;
+            return this;
+        }
+
+        public Builder adaptiveBatchSize(int adaptiveBatchMinSize, int adaptiveBatchMaxSize) {
+            if (adaptiveBatchMinSize <= 0 || adaptiveBatchMaxSize < adaptiveBatchMinSize) {
+                throw new IllegalArgumentException("The adaptiveBatchMinSize must be positive and not greater than adaptiveBatchMaxSize");
+            }
+            this.adaptiveBatchMinSize = adaptiveBatchMinSize;
+            this.adaptiveBatchMaxSize = adaptiveBatchMaxSize;
+            return this;
+        }
+
+        public Builder adaptiveBatchTimeLimit(int adaptiveBatchMinTimeLimit, int adaptiveBatchMaxTimeLimit) {
+            if (adaptiveBatchMinTimeLimit <= 0 || adaptiveBatchMaxTimeLimit < adaptiveBatchMinTimeLimit) {
+                throw new IllegalArgumentException("The adaptiveBatchMinTimeLimit must be positive and not greater than adaptiveBatchMaxTimeLimit");
+            }
+            this.adaptiveBatchMinTimeLimit = adaptiveBatchMinTimeLimit;
+            this.adaptiveBatchMaxTimeLimit = adaptiveBatchMaxTimeLimit;
+            return this;
+        }
+
+        public Builder adaptiveBatchMaxPayloadSize(int adaptiveBatchMaxPayloadSize) {
+            if (adaptiveBatchMaxPayloadSize <= 0) {
+                throw new IllegalArgumentException("The adaptiveBatchMaxPayloadSize con't be less then 1");
+            }
+            this.adaptiveBatchMaxPayloadSize = adaptiveBatchMaxPayloadSize;
+            return this;
+        }
+
         public Builder closePutRequestLimit() {
             this.putRequestLimitSwitch = false;
             return this;
@@ -109,32 +214,260 @@ public class MonitorConfig {
             return this;
         }
 
+        /**
+         * 消费者线程不等待响应，通过回调完成请求，在途请求数由putRequestLimit限制
+         */
+        public Builder asyncSend(boolean asyncSend) {
+            this.asyncSend = asyncSend;
+            return this;
+        }
+
+        /**
+         * VIRTUAL：每个在途批次一个虚拟线程同步发送，在途请求数由putRequestLimit限制，需要JDK 21及以上
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            if (executionMode == null) {
+                throw new IllegalArgumentException("The executionMode con't be null");
+            }
+            this.executionMode = executionMode;
+            return this;
+        }
+
         public Builder maxTPS(int maxTPS) {
             this.maxTPS = maxTPS;
             return this;
         }
 
+        public Builder aggregateFlushInterval(int aggregateFlushInterval) {
+            if (aggregateFlushInterval <= 0) {
+                throw new IllegalArgumentException("The aggregateFlushInterval con't be less then 1");
+            }
+            this.aggregateFlushInterval = aggregateFlushInterval;
+            return this;
+        }
+
+        /**
+         * 增加一个后端节点，时间线按 name + tags 一致性哈希分配到各个节点，每个节点有独立的队列和消费者线程
+         */
+        public Builder endpoint(String host, int port) {
+            this.endpoints.add(new Endpoint(host, port));
+            return this;
+        }
+
+        public Builder shardVirtualNodes(int shardVirtualNodes) {
+            if (shardVirtualNodes <= 0) {
+                throw new IllegalArgumentException("The shardVirtualNodes con't be less then 1");
+            }
+            this.shardVirtualNodes = shardVirtualNodes;
+            return this;
+        }
+
+        /**
+         * 每个指标名下的时间线超过cardinalityLimit后，新的 tags 组合按cardinalityPolicy丢弃或合并到溢出时间线，
+         * 计数器、gauge和直方图的时间线同样受限
+         */
+        public Builder cardinalityLimit(int cardinalityLimit, CardinalityPolicy cardinalityPolicy) {
+            if (cardinalityLimit < 0) {
+                throw new IllegalArgumentException("The cardinalityLimit con't be less then 0");
+            }
+            if (cardinalityPolicy == null) {
+                throw new IllegalArgumentException("The cardinalityPolicy con't be null");
+            }
+            this.cardinalityLimit = cardinalityLimit;
+            this.cardinalityPolicy = cardinalityPolicy;
+            return this;
+        }
+
+        public Builder cardinalityMaxNames(int cardinalityMaxNames) {
+            if (cardinalityMaxNames <= 0) {
+                throw new IllegalArgumentException("The cardinalityMaxNames con't be less then 1");
+            }
+            this.cardinalityMaxNames = cardinalityMaxNames;
+            return this;
+        }
+
+        public Builder cardinalityResetInterval(int cardinalityResetInterval) {
+            if (cardinalityResetInterval <= 0) {
+                throw new IllegalArgumentException("The cardinalityResetInterval con't be less then 1");
+            }
+            this.cardinalityResetInterval = cardinalityResetInterval;
+            return this;
+        }
+
+        /**
+         * 队列按Priority分成三个通道，发送线程按权重从各通道取数据，队列满时先丢弃低优先级的数据点。
+         * 总容量仍是batchPutBufferSize，但每个通道都按batchPutBufferSize预先分配，队列占用的内存约为不分通道时的三倍
+         */
+        public Builder priorityLanes(int highWeight, int normalWeight, int lowWeight) {
+            if (highWeight <= 0 || normalWeight <= 0 || lowWeight <= 0) {
+                throw new IllegalArgumentException("The priority weight con't be less then 1");
+            }
+            this.priorityWeights = new int[]{highWeight, normalWeight, lowWeight};
+            return this;
+        }
+
+        /**
+         * 没有调用Metric.setPriority()的数据点，按最长匹配的指标名前缀决定优先级
+         */
+        public Builder priority(String namePrefix, Priority priority) {
+            if (namePrefix == null || priority == null) {
+                throw new IllegalArgumentException("The namePrefix and priority con't be null");
+            }
+            this.priorityPrefixes.put(namePrefix, priority);
+            return this;
+        }
+
+        /**
+         * Sender生成的时间戳（gauge、计数器、直方图、rollup和record()）使用的时钟，测试中可以使用ManualClock。
+         * Sender运行期间它也是Metric构造函数使用的全局时钟（见Clocks）。传入的时钟由调用方关闭。
+         * 不配置时使用Clocks按clockResolution共享的CachedClock
+         */
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * 共享CachedClock的刷新间隔，时间戳最多落后这么多毫秒，间隔越大后台线程唤醒越少
+         */
+        public Builder clockResolution(int clockResolution) {
+            if (clockResolution <= 0) {
+                throw new IllegalArgumentException("The clockResolution con't be less then 1");
+            }
+            this.clockResolution = clockResolution;
+            return this;
+        }
+
+        public Builder clientStatsReport(boolean clientStatsReport) {
+            this.clientStatsReport = clientStatsReport;
+            return this;
+        }
+
+        public Builder histogramPercentiles(double... histogramPercentiles) {
+            for (double percentile : histogramPercentiles) {
+                if (percentile <= 0 || percentile > 100) {
+                    throw new IllegalArgumentException("The histogramPercentiles must be in (0, 100]");
+                }
+            }
+            this.histogramPercentiles = histogramPercentiles.clone();
+            return this;
+        }
+
+        /**
+         * 指标名以namePrefix开头的数据点按interval秒的时间桶聚合后上报，原始数据点不再发送。多个前缀匹配时取最长的。
+         */
+        public Builder rollup(String namePrefix, int interval, RollupAggregation aggregation) {
+            if (namePrefix == null) {
+                throw new IllegalArgumentException("The namePrefix con't be null");
+            }
+            this.rollupRules.put(namePrefix, new RollupRule(interval, aggregation));
+            return this;
+        }
+
+        public Builder queueType(QueueType queueType) {
+            this.queueType = queueType;
+            return this;
+        }
+
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder spillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        public Builder spillHighWaterMark(double spillHighWaterMark) {
+            if (spillHighWaterMark <= 0 || spillHighWaterMark > 1) {
+                throw new IllegalArgumentException("The spillHighWaterMark must be in (0, 1]");
+            }
+            this.spillHighWaterMark = spillHighWaterMark;
+            return this;
+        }
+
+        public Builder spillSegment(int spillSegmentSize, int spillMaxSegments) {
+            if (spillSegmentSize < 1024 || spillMaxSegments <= 0) {
+                throw new IllegalArgumentException("The spillSegmentSize con't be less then 1024 and spillMaxSegments con't be less then 1");
+            }
+            this.spillSegmentSize = spillSegmentSize;
+            this.spillMaxSegments = spillMaxSegments;
+            return this;
+        }
+
+        public Builder metricPoolSize(int metricPoolSize) {
+            if (metricPoolSize < 0) {
+                throw new IllegalArgumentException("The metricPoolSize con't be less then 0");
+            }
+            this.metricPoolSize = metricPoolSize;
+            return this;
+        }
+
         public MonitorConfig config() {
             MonitorConfig hiTSDBConfig = new MonitorConfig();
 
             hiTSDBConfig.host = this.host;
             hiTSDBConfig.port = this.port;
+            List<Endpoint> endpoints = new ArrayList<Endpoint>();
+            endpoints.add(new Endpoint(this.host, this.port));
+            for (Endpoint endpoint : this.endpoints) {
+                if (!endpoints.contains(endpoint)) {
+                    endpoints.add(endpoint);
+                }
+            }
+            hiTSDBConfig.endpoints = Collections.unmodifiableList(endpoints);
+            hiTSDBConfig.shardVirtualNodes = this.shardVirtualNodes;
             hiTSDBConfig.batchPutSize = this.batchPutSize;
             hiTSDBConfig.batchPutTimeLimit = this.batchPutTimeLimit;
             hiTSDBConfig.batchPutBufferSize = this.batchPutBufferSize;
             hiTSDBConfig.batchPutRetryCount = this.batchPutRetryCount;
+            hiTSDBConfig.batchPutRetryBufferSize = this.batchPutRetryBufferSize;
+            hiTSDBConfig.batchPutRetryBackoff = this.batchPutRetryBackoff;
+            hiTSDBConfig.batchPutRetryMaxBackoff = this.batchPutRetryMaxBackoff;
             hiTSDBConfig.httpConnectionPool = this.httpConnectionPool;
             hiTSDBConfig.httpConnectTimeout = this.httpConnectTimeout;
             hiTSDBConfig.putRequestLimitSwitch = this.putRequestLimitSwitch;
             hiTSDBConfig.putRequestLimit = this.putRequestLimit;
             hiTSDBConfig.batchPutConsumerThreadCount = this.batchPutConsumerThreadCount;
             hiTSDBConfig.httpCompress = this.httpCompress;
+            hiTSDBConfig.httpCompressLevel = this.httpCompressLevel;
+            hiTSDBConfig.httpCompressStrategy = this.httpCompressStrategy;
+            hiTSDBConfig.httpCompressThreshold = this.httpCompressThreshold;
+            hiTSDBConfig.binaryPutPath = this.binaryPutPath;
             hiTSDBConfig.ioThreadCount = this.ioThreadCount;
             hiTSDBConfig.backpressure = this.backpressure;
             hiTSDBConfig.httpConnectionLiveTime = this.httpConnectionLiveTime;
             hiTSDBConfig.httpKeepaliveTime = this.httpKeepaliveTime;
             hiTSDBConfig.maxTPS = this.maxTPS;
             hiTSDBConfig.asyncPut = this.asyncPut;
+            hiTSDBConfig.asyncSend = this.asyncSend;
+            hiTSDBConfig.executionMode = this.executionMode;
+            hiTSDBConfig.aggregateFlushInterval = this.aggregateFlushInterval;
+            hiTSDBConfig.adaptiveBatch = this.adaptiveBatch;
+            hiTSDBConfig.adaptiveBatchMinSize = this.adaptiveBatchMinSize;
+            hiTSDBConfig.adaptiveBatchMaxSize = this.adaptiveBatchMaxSize;
+            hiTSDBConfig.adaptiveBatchMinTimeLimit = this.adaptiveBatchMinTimeLimit;
+            hiTSDBConfig.adaptiveBatchMaxTimeLimit = this.adaptiveBatchMaxTimeLimit;
+            hiTSDBConfig.adaptiveBatchMaxPayloadSize = this.adaptiveBatchMaxPayloadSize;
+            hiTSDBConfig.metricPoolSize = this.metricPoolSize;
+            hiTSDBConfig.histogramPercentiles = this.histogramPercentiles;
+            hiTSDBConfig.rollupRules = Collections.unmodifiableMap(new LinkedHashMap<String, RollupRule>(this.rollupRules));
+            hiTSDBConfig.clientStatsReport = this.clientStatsReport;
+            hiTSDBConfig.clock = this.clock;
+            hiTSDBConfig.clockResolution = this.clockResolution;
+            hiTSDBConfig.priorityWeights = this.priorityWeights;
+            hiTSDBConfig.priorityPrefixes = Collections.unmodifiableMap(new LinkedHashMap<String, Priority>(this.priorityPrefixes));
+            hiTSDBConfig.cardinalityLimit = this.cardinalityLimit;
+            hiTSDBConfig.cardinalityPolicy = this.cardinalityPolicy;
+            hiTSDBConfig.cardinalityMaxNames = this.cardinalityMaxNames;
+            hiTSDBConfig.cardinalityResetInterval = this.cardinalityResetInterval;
+            hiTSDBConfig.queueType = this.queueType;
+            hiTSDBConfig.waitStrategy = this.waitStrategy;
+            hiTSDBConfig.spillDirectory = this.spillDirectory;
+            hiTSDBConfig.spillHighWaterMark = this.spillHighWaterMark;
+            hiTSDBConfig.spillSegmentSize = this.spillSegmentSize;
+            hiTSDBConfig.spillMaxSegments = this.spillMaxSegments;
             if (this.putRequestLimitSwitch && this.putRequestLimit <= 0) {
                 hiTSDBConfig.putRequestLimit = this.httpConnectionPool;
             }
@@ -147,6 +480,32 @@ public class MonitorConfig {
             return this;
         }
 
+        public Builder httpCompressLevel(int httpCompressLevel) {
+            if (httpCompressLevel != Deflater.DEFAULT_COMPRESSION
+                    && (httpCompressLevel < Deflater.NO_COMPRESSION || httpCompressLevel > Deflater.BEST_COMPRESSION)) {
+                throw new IllegalArgumentException("The httpCompressLevel must be between 0 and 9, or -1 for default");
+            }
+            this.httpCompressLevel = httpCompressLevel;
+            return this;
+        }
+
+        public Builder httpCompressStrategy(int httpCompressStrategy) {
+            if (httpCompressStrategy != Deflater.DEFAULT_STRATEGY && httpCompressStrategy != Deflater.FILTERED
+                    && httpCompressStrategy != Deflater.HUFFMAN_ONLY) {
+                throw new IllegalArgumentException("The httpCompressStrategy must be one of the Deflater strategies");
+            }
+            this.httpCompressStrategy = httpCompressStrategy;
+            return this;
+        }
+
+        public Builder httpCompressThreshold(int httpCompressThreshold) {
+            if (httpCompressThreshold < 0) {
+                throw new IllegalArgumentException("The httpCompressThreshold con't be less then 0");
+            }
+            this.httpCompressThreshold = httpCompressThreshold;
+            return this;
+        }
+
         public Builder httpConnectionPool(int connectionPool) {
             if (connectionPool <= 0) {
                 throw new IllegalArgumentException("The ConnectionPool con't be less then 1");
@@ -170,6 +529,19 @@ public class MonitorConfig {
             return this;
         }
 
+        /**
+         * 使用BinaryMetricEncoder的二进制格式写入binaryPutPath，批次中有非数值或带version的数据点时仍然使用JSON写入/api/put
+         */
+        public Builder binaryPutPath(String binaryPutPath) {
+            this.binaryPutPath = binaryPutPath;
+            return this;
+        }
+
+        public Builder openBinaryPut() {
+            this.binaryPutPath = HttpURL.PUT_BINARY;
+            return this;
+        }
+
     }
 
     public static Builder address(String host) {
@@ -185,13 +557,39 @@ public class MonitorConfig {
     private int batchPutBufferSize;
     private int batchPutConsumerThreadCount;
     private int batchPutRetryCount;
+    private int batchPutRetryBufferSize;
+    private int batchPutRetryBackoff;
+    private int batchPutRetryMaxBackoff;
     private int batchPutSize;
     private int batchPutTimeLimit;
+    private boolean adaptiveBatch;
+    private int adaptiveBatchMinSize;
+    private int adaptiveBatchMaxSize;
+    private int adaptiveBatchMinTimeLimit;
+    private int adaptiveBatchMaxTimeLimit;
+    private int adaptiveBatchMaxPayloadSize;
     private int maxTPS;
+    private int aggregateFlushInterval;
+    private int metricPoolSize;
+    private double[] histogramPercentiles;
+    private Map<String, RollupRule> rollupRules;
+    private boolean clientStatsReport;
+    private Clock clock;
+    private int clockResolution;
+    private int[] priorityWeights;
+    private Map<String, Priority> priorityPrefixes;
+    private int cardinalityLimit;
+    private CardinalityPolicy cardinalityPolicy;
+    private int cardinalityMaxNames;
+    private int cardinalityResetInterval;
 
     private String host;
 
     private boolean httpCompress;
+    private int httpCompressLevel;
+    private int httpCompressStrategy;
+    private int httpCompressThreshold;
+    private String binaryPutPath;
     private int httpConnectionPool;
     private int httpConnectTimeout;
     private int httpConnectionLiveTime;
@@ -200,8 +598,18 @@ public class MonitorConfig {
     private int ioThreadCount;
     private boolean backpressure;
     private boolean asyncPut;
+    private boolean asyncSend;
+    private ExecutionMode executionMode;
+    private QueueType queueType;
+    private WaitStrategy waitStrategy;
+    private String spillDirectory;
+    private double spillHighWaterMark;
+    private int spillSegmentSize;
+    private int spillMaxSegments;
 
     private int port;
+    private List<Endpoint> endpoints;
+    private int shardVirtualNodes;
 
     public int getPutRequestLimit() {
         return putRequestLimit;
@@ -219,6 +627,18 @@ public class MonitorConfig {
         return batchPutRetryCount;
     }
 
+    public int getBatchPutRetryBufferSize() {
+        return batchPutRetryBufferSize;
+    }
+
+    public int getBatchPutRetryBackoff() {
+        return batchPutRetryBackoff;
+    }
+
+    public int getBatchPutRetryMaxBackoff() {
+        return batchPutRetryMaxBackoff;
+    }
+
     public int getBatchPutSize() {
         return batchPutSize;
     }
@@ -247,6 +667,17 @@ public class MonitorConfig {
         return port;
     }
 
+    /**
+     * 所有后端节点，第一个是host/port
+     */
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
     public boolean isPutRequestLimitSwitch() {
         return putRequestLimitSwitch;
     }
@@ -255,6 +686,22 @@ public class MonitorConfig {
         return httpCompress;
     }
 
+    public int getHttpCompressLevel() {
+        return httpCompressLevel;
+    }
+
+    public int getHttpCompressStrategy() {
+        return httpCompressStrategy;
+    }
+
+    public int getHttpCompressThreshold() {
+        return httpCompressThreshold;
+    }
+
+    public String getBinaryPutPath() {
+        return binaryPutPath;
+    }
+
     public boolean isBackpressure() {
         return backpressure;
     }
@@ -271,7 +718,119 @@ public class MonitorConfig {
         return asyncPut;
     }
 
+    public boolean isAsyncSend() {
+        return asyncSend;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public boolean isAdaptiveBatch() {
+        return adaptiveBatch;
+    }
+
+    public int getAdaptiveBatchMinSize() {
+        return adaptiveBatchMinSize;
+    }
+
+    public int getAdaptiveBatchMaxSize() {
+        return adaptiveBatchMaxSize;
+    }
+
+    public int getAdaptiveBatchMinTimeLimit() {
+        return adaptiveBatchMinTimeLimit;
+    }
+
+    public int getAdaptiveBatchMaxTimeLimit() {
+        return adaptiveBatchMaxTimeLimit;
+    }
+
+    public int getAdaptiveBatchMaxPayloadSize() {
+        return adaptiveBatchMaxPayloadSize;
+    }
+
     public int getMaxTPS() {
         return maxTPS;
     }
+
+    public int getAggregateFlushInterval() {
+        return aggregateFlushInterval;
+    }
+
+    public int getMetricPoolSize() {
+        return metricPoolSize;
+    }
+
+    public boolean isClientStatsReport() {
+        return clientStatsReport;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public int getClockResolution() {
+        return clockResolution;
+    }
+
+    public boolean isPriorityLanes() {
+        return priorityWeights != null;
+    }
+
+    public int[] getPriorityWeights() {
+        return priorityWeights;
+    }
+
+    public Map<String, Priority> getPriorityPrefixes() {
+        return priorityPrefixes;
+    }
+
+    public int getCardinalityLimit() {
+        return cardinalityLimit;
+    }
+
+    public CardinalityPolicy getCardinalityPolicy() {
+        return cardinalityPolicy;
+    }
+
+    public int getCardinalityMaxNames() {
+        return cardinalityMaxNames;
+    }
+
+    public int getCardinalityResetInterval() {
+        return cardinalityResetInterval;
+    }
+
+    public double[] getHistogramPercentiles() {
+        return histogramPercentiles;
+    }
+
+    public Map<String, RollupRule> getRollupRules() {
+        return rollupRules;
+    }
+
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public double getSpillHighWaterMark() {
+        return spillHighWaterMark;
+    }
+
+    public int getSpillSegmentSize() {
+        return spillSegmentSize;
+    }
+
+    public int getSpillMaxSegments() {
+        return spillMaxSegments;
+    }
 }
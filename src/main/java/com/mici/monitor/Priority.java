@@ -0,0 +1,10 @@
+package com.mici.monitor;
+
+/**
+ * 数据点的优先级，打开priorityLanes后每个优先级一个队列通道
+ */
+public enum Priority {
+    HIGH,
+    NORMAL,
+    LOW
+}
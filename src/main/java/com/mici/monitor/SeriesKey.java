@@ -0,0 +1,132 @@
+package com.mici.monitor;
+
+import com.mici.monitor.serialize.MetricEncoder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 不可变的时间线标识（name + tags），创建后驻留在全局缓存中，相同的时间线共享同一个实例。
+ * 预先计算hash和序列化好的 {"metric":...,"tags":{...} 前缀，编码时直接拷贝。
+ * 缓存超过MAX_INTERNED后新的时间线不再驻留，也不预先计算前缀，编码时直接按name和tags写出。
+ */
+public final class SeriesKey {
+    public static final int MAX_INTERNED = 100000;
+
+    private static final ConcurrentMap<String, SeriesKey> UNTAGGED = new ConcurrentHashMap<String, SeriesKey>();
+    private static final ConcurrentMap<SeriesKey, SeriesKey> TAGGED = new ConcurrentHashMap<SeriesKey, SeriesKey>();
+
+    private final String name;
+    private final Map<String, String> tags;
+    private final int hash;
+    private volatile byte[] encodedPrefix;
+
+    private SeriesKey(String name, Map<String, String> tags, int hash) {
+        this.name = name;
+        this.tags = tags;
+        this.hash = hash;
+    }
+
+    public static SeriesKey of(String name) {
+        SeriesKey key = UNTAGGED.get(name);
+        if (key != null) {
+            return key;
+        }
+
+        key = create(name, Collections.<String, String>emptyMap());
+        if (UNTAGGED.size() >= MAX_INTERNED) {
+            return key;
+        }
+        key.encodedPrefix = MetricEncoder.encodeSeriesPrefix(name, key.tags);
+        SeriesKey old = UNTAGGED.putIfAbsent(name, key);
+        return old != null ? old : key;
+    }
+
+    public static SeriesKey of(String name, Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return of(name);
+        }
+
+        // 用调用方的map构造查找用的key，命中缓存时不拷贝tags
+        SeriesKey probe = new SeriesKey(name, tags, hash(name, tags));
+        SeriesKey key = TAGGED.get(probe);
+        if (key != null) {
+            return key;
+        }
+
+        key = create(name, tags);
+        if (TAGGED.size() >= MAX_INTERNED) {
+            return key;
+        }
+        key.encodedPrefix = MetricEncoder.encodeSeriesPrefix(name, key.tags);
+        SeriesKey old = TAGGED.putIfAbsent(key, key);
+        return old != null ? old : key;
+    }
+
+    private static SeriesKey create(String name, Map<String, String> tags) {
+        Map<String, String> copy = tags.isEmpty()
+                ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new TreeMap<String, String>(tags));
+        return new SeriesKey(name, copy, hash(name, copy));
+    }
+
+    static int hash(String name, Map<String, String> tags) {
+        // Map.hashCode与遍历顺序无关，HashMap和TreeMap得到相同的值
+        return 31 * name.hashCode() + (tags == null ? 0 : tags.hashCode());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 按tag名排序的只读map
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * 驻留的时间线在创建时已经计算好前缀，未驻留的时间线返回false
+     */
+    public boolean hasEncodedPrefix() {
+        return encodedPrefix != null;
+    }
+
+    /**
+     * 序列化好的 {"metric":"name","tags":{...} 前缀，UTF-8编码，调用方不能修改。未驻留的时间线在这里计算并缓存
+     */
+    public byte[] getEncodedPrefix() {
+        byte[] prefix = encodedPrefix;
+        if (prefix == null) {
+            prefix = MetricEncoder.encodeSeriesPrefix(name, tags);
+            encodedPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey that = (SeriesKey) o;
+        return hash == that.hash && name.equals(that.name) && tags.equals(that.tags);
+    }
+
+    @Override
+    public String toString() {
+        return name + tags;
+    }
+}
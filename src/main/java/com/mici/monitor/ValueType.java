@@ -0,0 +1,10 @@
+package com.mici.monitor;
+
+/**
+ * Metric值的存储类型，LONG和DOUBLE以基本类型保存，不装箱。
+ */
+public enum ValueType {
+    LONG,
+    DOUBLE,
+    OBJECT
+}
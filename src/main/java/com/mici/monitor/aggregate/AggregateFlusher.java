@@ -0,0 +1,78 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.client.Sender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class AggregateFlusher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregateFlusher.class);
+    private final List<Aggregator> aggregators = new CopyOnWriteArrayList<Aggregator>();
+    private final Sender sender;
+    private final int flushInterval;
+    private ScheduledExecutorService scheduler;
+
+    public AggregateFlusher(Sender sender, int flushInterval) {
+        this.sender = sender;
+        this.flushInterval = flushInterval;
+    }
+
+    public void register(Aggregator aggregator) {
+        aggregators.add(aggregator);
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Monitor-Aggregate-Flush");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void flush() {
+        for (Aggregator aggregator : aggregators) {
+            try {
+                aggregator.flush(sender);
+            } catch (Exception ex) {
+                LOGGER.error("An error occurred while flushing the aggregator", ex);
+            }
+        }
+    }
+
+    /**
+     * 停止定时任务，并做最后一次flush，保证关闭前累积的数据不丢失。
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.warn("The thread {} is Interrupted", Thread.currentThread().getName());
+        }
+        scheduler = null;
+        flush();
+    }
+}
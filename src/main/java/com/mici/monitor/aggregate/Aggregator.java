@@ -0,0 +1,10 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.client.Sender;
+
+/**
+ * 客户端预聚合器，由AggregateFlusher按固定周期调用，把一个周期内累积的数据转换成Metric交给Sender。
+ */
+public interface Aggregator {
+    void flush(Sender sender);
+}
@@ -0,0 +1,165 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.cardinality.CardinalityGuard;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 name + tags 聚合的计数器。写入只对LongAdder做累加，每个flush周期只为每个计数器生成一个Metric。
+ * 连续IDLE_FLUSHES个周期没有增量的计数器从map中移除，只出现过一次的时间线（例如带请求ID的tag）不会一直占用内存。
+ * 移除时先标记retired再上报剩余的增量，之后写入已移除计数器的线程把它放入late，下一个周期补报，增量不会丢失。
+ */
+public class CounterRegistry implements Aggregator {
+    static final int IDLE_FLUSHES = 2;
+    // 没有tag的计数器单独存放，count(name)不需要构造key
+    private final ConcurrentMap<String, Counter> untagged = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<SeriesKey, Counter> tagged = new ConcurrentHashMap<SeriesKey, Counter>();
+    private final Clock clock;
+    private final CardinalityGuard guard;
+    // 移除之后还有写入的计数器
+    private final ConcurrentLinkedQueue<Counter> late = new ConcurrentLinkedQueue<Counter>();
+
+    /**
+     * @param clock 上报的数据点取flush时的时间
+     * @param guard 为空时不限制时间线数量
+     */
+    public CounterRegistry(Clock clock, CardinalityGuard guard) {
+        this.clock = clock;
+        this.guard = guard;
+    }
+
+    /**
+     * @return 时间线超出cardinality限制被丢弃时返回false
+     */
+    public boolean increment(String name, long delta) {
+        Counter counter = untagged.get(name);
+        if (counter == null) {
+            counter = create(SeriesKey.of(name));
+            if (counter == null) {
+                return false;
+            }
+        }
+        counter.add(delta);
+        return true;
+    }
+
+    public boolean increment(String name, Map<String, String> tags, long delta) {
+        if (tags == null || tags.isEmpty()) {
+            return increment(name, delta);
+        }
+
+        SeriesKey key = SeriesKey.of(name, tags);
+        Counter counter = tagged.get(key);
+        if (counter == null) {
+            counter = create(key);
+            if (counter == null) {
+                return false;
+            }
+        }
+        counter.add(delta);
+        return true;
+    }
+
+    /**
+     * 新的时间线先经过CardinalityGuard，超限时得到溢出时间线的计数器，或者丢弃时返回null
+     */
+    private Counter create(SeriesKey key) {
+        if (guard != null) {
+            key = guard.admit(key);
+            if (key == null) {
+                return null;
+            }
+        }
+
+        Counter counter = new Counter(key, late);
+        Counter old = key.getTags().isEmpty()
+                ? untagged.putIfAbsent(key.getName(), counter)
+                : tagged.putIfAbsent(key, counter);
+        return old != null ? old : counter;
+    }
+
+    @Override
+    public void flush(Sender sender) {
+        long now = clock.currentTimeMillis();
+        Counter counter;
+        while ((counter = late.poll()) != null) {
+            flushRetired(sender, counter, now);
+        }
+        for (Counter live : untagged.values()) {
+            live.flush(sender, now);
+            if (live.idleFlushes >= IDLE_FLUSHES && untagged.remove(live.seriesKey.getName(), live)) {
+                live.retired = true;
+                flushRetired(sender, live, now);
+            }
+        }
+        for (Counter live : tagged.values()) {
+            live.flush(sender, now);
+            if (live.idleFlushes >= IDLE_FLUSHES && tagged.remove(live.seriesKey, live)) {
+                live.retired = true;
+                flushRetired(sender, live, now);
+            }
+        }
+    }
+
+    private void flushRetired(Sender sender, Counter counter, long now) {
+        try {
+            counter.flush(sender, now);
+        } catch (RuntimeException e) {
+            late.add(counter);
+            throw e;
+        }
+    }
+
+    int size() {
+        return untagged.size() + tagged.size();
+    }
+
+    private static class Counter {
+        private final SeriesKey seriesKey;
+        private final LongAdder adder = new LongAdder();
+        private final ConcurrentLinkedQueue<Counter> late;
+        // 已经从map中移除
+        private volatile boolean retired;
+        // 只在flush线程读写，记录已经上报的累计值，避免sumThenReset在并发累加时丢数
+        private long reported;
+        // 连续没有增量的周期数，只在flush线程读写
+        private int idleFlushes;
+
+        Counter(SeriesKey seriesKey, ConcurrentLinkedQueue<Counter> late) {
+            this.seriesKey = seriesKey;
+            this.late = late;
+        }
+
+        void add(long delta) {
+            adder.add(delta);
+            // 累加在标记retired之前时，移除时的上报已经包括这次累加
+            if (retired) {
+                late.add(this);
+            }
+        }
+
+        void flush(Sender sender, long now) {
+            long sum = adder.sum();
+            long delta = sum - reported;
+            if (delta == 0) {
+                idleFlushes++;
+                return;
+            }
+
+            // put失败（队列已满或已关闭）时不更新reported，这部分增量留到下一个周期上报
+            Metric metric = new Metric(seriesKey, delta);
+            metric.setTimestamp(now);
+            sender.put(metric);
+            reported = sum;
+            idleFlushes = 0;
+        }
+    }
+}
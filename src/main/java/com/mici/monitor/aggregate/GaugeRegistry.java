@@ -0,0 +1,217 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.cardinality.CardinalityGuard;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按 name + tags 保存最新值的gauge。同一个时间线的多次写入覆盖同一个槽位，
+ * 每个flush周期只上报有更新的gauge的最后一个值，数据点数量取决于时间线数量而不是调用频率。
+ * 连续IDLE_FLUSHES个周期没有更新的gauge从map中移除，移除之后还有写入时由late补报，做法同CounterRegistry。
+ */
+public class GaugeRegistry implements Aggregator {
+    static final int IDLE_FLUSHES = 2;
+    // 没有tag的gauge单独存放，gauge(name)不需要构造key
+    private final ConcurrentMap<String, Gauge> untagged = new ConcurrentHashMap<String, Gauge>();
+    private final ConcurrentMap<SeriesKey, Gauge> tagged = new ConcurrentHashMap<SeriesKey, Gauge>();
+    private final Clock clock;
+    private final CardinalityGuard guard;
+    // 移除之后还有写入的gauge
+    private final ConcurrentLinkedQueue<Gauge> late = new ConcurrentLinkedQueue<Gauge>();
+
+    /**
+     * @param clock 记录写入时间的时钟
+     * @param guard 为空时不限制时间线数量
+     */
+    public GaugeRegistry(Clock clock, CardinalityGuard guard) {
+        this.clock = clock;
+        this.guard = guard;
+    }
+
+    /**
+     * @return 时间线超出cardinality限制被丢弃时返回false
+     */
+    public boolean set(String name, long value) {
+        Gauge gauge = gauge(name);
+        if (gauge == null) {
+            return false;
+        }
+        gauge.set(value);
+        return true;
+    }
+
+    public boolean set(String name, double value) {
+        Gauge gauge = gauge(name);
+        if (gauge == null) {
+            return false;
+        }
+        gauge.set(value);
+        return true;
+    }
+
+    public boolean set(String name, Map<String, String> tags, long value) {
+        Gauge gauge = gauge(name, tags);
+        if (gauge == null) {
+            return false;
+        }
+        gauge.set(value);
+        return true;
+    }
+
+    public boolean set(String name, Map<String, String> tags, double value) {
+        Gauge gauge = gauge(name, tags);
+        if (gauge == null) {
+            return false;
+        }
+        gauge.set(value);
+        return true;
+    }
+
+    private Gauge gauge(String name) {
+        Gauge gauge = untagged.get(name);
+        return gauge != null ? gauge : create(SeriesKey.of(name));
+    }
+
+    private Gauge gauge(String name, Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return gauge(name);
+        }
+
+        SeriesKey key = SeriesKey.of(name, tags);
+        Gauge gauge = tagged.get(key);
+        return gauge != null ? gauge : create(key);
+    }
+
+    /**
+     * 新的时间线先经过CardinalityGuard，超限时得到溢出时间线的gauge，或者丢弃时返回null
+     */
+    private Gauge create(SeriesKey key) {
+        if (guard != null) {
+            key = guard.admit(key);
+            if (key == null) {
+                return null;
+            }
+        }
+
+        Gauge gauge = new Gauge(key, clock, late);
+        Gauge old = key.getTags().isEmpty()
+                ? untagged.putIfAbsent(key.getName(), gauge)
+                : tagged.putIfAbsent(key, gauge);
+        return old != null ? old : gauge;
+    }
+
+    @Override
+    public void flush(Sender sender) {
+        Gauge gauge;
+        while ((gauge = late.poll()) != null) {
+            flushRetired(sender, gauge);
+        }
+        for (Gauge live : untagged.values()) {
+            live.flush(sender);
+            if (live.idleFlushes >= IDLE_FLUSHES && untagged.remove(live.seriesKey.getName(), live)) {
+                live.retired = true;
+                flushRetired(sender, live);
+            }
+        }
+        for (Gauge live : tagged.values()) {
+            live.flush(sender);
+            if (live.idleFlushes >= IDLE_FLUSHES && tagged.remove(live.seriesKey, live)) {
+                live.retired = true;
+                flushRetired(sender, live);
+            }
+        }
+    }
+
+    private void flushRetired(Sender sender, Gauge gauge) {
+        try {
+            gauge.flush(sender);
+        } catch (RuntimeException e) {
+            late.add(gauge);
+            throw e;
+        }
+    }
+
+    int size() {
+        return untagged.size() + tagged.size();
+    }
+
+    private static class Gauge {
+        private final SeriesKey seriesKey;
+        private final Clock clock;
+        // 最后一次写入的值，flush时取走并置空，取走之后的写入在下一个周期上报
+        private final AtomicReference<Sample> latest = new AtomicReference<Sample>();
+        private final ConcurrentLinkedQueue<Gauge> late;
+        // 已经从map中移除
+        private volatile boolean retired;
+        // 连续没有更新的周期数，只在flush线程读写
+        private int idleFlushes;
+
+        Gauge(SeriesKey seriesKey, Clock clock, ConcurrentLinkedQueue<Gauge> late) {
+            this.seriesKey = seriesKey;
+            this.clock = clock;
+            this.late = late;
+        }
+
+        void set(long value) {
+            set(new Sample(value, 0, false, clock.currentTimeMillis()));
+        }
+
+        void set(double value) {
+            set(new Sample(0, value, true, clock.currentTimeMillis()));
+        }
+
+        private void set(Sample sample) {
+            latest.set(sample);
+            if (retired) {
+                late.add(this);
+            }
+        }
+
+        void flush(Sender sender) {
+            Sample sample = latest.getAndSet(null);
+            if (sample == null) {
+                idleFlushes++;
+                return;
+            }
+            idleFlushes = 0;
+
+            Metric metric = sample.isDouble
+                    ? new Metric(seriesKey, sample.doubleValue)
+                    : new Metric(seriesKey, sample.longValue);
+            // 使用最后一次写入的时间
+            metric.setTimestamp(sample.timestamp);
+            try {
+                sender.put(metric);
+            } catch (RuntimeException e) {
+                // 没有写入成功，期间没有新的值时留到下一个周期
+                latest.compareAndSet(null, sample);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 值、类型和时间戳一起发布，flush不会读到一次写入的值和另一次写入的类型
+     */
+    private static final class Sample {
+        private final long longValue;
+        private final double doubleValue;
+        private final boolean isDouble;
+        private final long timestamp;
+
+        Sample(long longValue, double doubleValue, boolean isDouble, long timestamp) {
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+            this.isDouble = isDouble;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.mici.monitor.aggregate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定对数线性分桶的直方图，记录为常数时间的无锁操作。
+ * 小于32的值每个值一个桶，之后每个2的幂区间再线性分为32个桶，相对误差不超过1/32。
+ * 每个flush周期由HistogramRegistry取出快照并清零。只记录非负值，负值按0记录。
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 最高位为62时仍在范围内：32个精确桶 + 58个区间 * 32
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(index(value));
+        sum.addAndGet(value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * 记录从startNanos（System.nanoTime()）到现在经过的毫秒数
+     */
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private void updateMin(long value) {
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * 桶的代表值，取桶区间的中点
+     */
+    static long value(int index) {
+        return lowerBound(index) + (width(index) >> 1);
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    static long upperBound(int index) {
+        return lowerBound(index) + width(index) - 1;
+    }
+
+    private static long width(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return 1;
+        }
+        return 1L << ((index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * 取出当前周期的数据并清零。与并发的record之间不加锁，个别数据点可能被计入下一个周期。
+     */
+    Snapshot snapshotAndReset(long[] counts) {
+        long count = 0;
+        int lowest = -1;
+        int highest = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = buckets.get(i) == 0 ? 0 : buckets.getAndSet(i, 0);
+            counts[i] = c;
+            count += c;
+            if (c > 0) {
+                if (lowest < 0) {
+                    lowest = i;
+                }
+                highest = i;
+            }
+        }
+        long snapshotSum = sum.getAndSet(0);
+        long snapshotMin = min.getAndSet(Long.MAX_VALUE);
+        long snapshotMax = max.getAndSet(Long.MIN_VALUE);
+        if (count > 0) {
+            // record先计入桶再更新min/max，两步之间取快照时min/max还是初始值，用非空桶的边界代替
+            if (snapshotMin == Long.MAX_VALUE) {
+                snapshotMin = lowerBound(lowest);
+            }
+            if (snapshotMax == Long.MIN_VALUE) {
+                snapshotMax = upperBound(highest);
+            }
+        }
+        return new Snapshot(counts, count, snapshotSum, snapshotMin, snapshotMax);
+    }
+
+    static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getSum() {
+            return sum;
+        }
+
+        long getMin() {
+            return min;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile 0-100
+         */
+        long percentile(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // 桶的代表值不超出本周期真实的最小值和最大值
+                    return Math.max(min, Math.min(max, value(i)));
+                }
+            }
+            return max;
+        }
+    }
+}
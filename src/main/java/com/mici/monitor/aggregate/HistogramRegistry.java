@@ -0,0 +1,188 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.cardinality.CardinalityGuard;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按 name + tags 管理直方图，每个flush周期为有数据的直方图输出
+ * name.count、name.sum、name.min、name.max 以及配置的百分位 name.p50、name.p99、name.p999 等数据点。
+ * 连续IDLE_FLUSHES个周期没有数据的直方图从map中移除，调用方继续使用移除之前取得的Histogram时，
+ * 由late在下一个周期补报，做法同CounterRegistry。
+ */
+public class HistogramRegistry implements Aggregator {
+    static final int IDLE_FLUSHES = 2;
+    private final ConcurrentMap<SeriesKey, Entry> histograms = new ConcurrentHashMap<SeriesKey, Entry>();
+    private final double[] percentiles;
+    private final Clock clock;
+    private final CardinalityGuard guard;
+    // 被cardinality限制丢弃的时间线共用，不上报
+    private final Histogram discarded = new Histogram();
+    // 移除之后还有记录的直方图
+    private final ConcurrentLinkedQueue<Entry> late = new ConcurrentLinkedQueue<Entry>();
+    // 只在flush线程使用
+    private final long[] counts = new long[Histogram.BUCKET_COUNT];
+
+    /**
+     * @param clock 上报的数据点取flush时的时间
+     * @param guard 为空时不限制时间线数量
+     */
+    public HistogramRegistry(double[] percentiles, Clock clock, CardinalityGuard guard) {
+        this.percentiles = percentiles.clone();
+        this.clock = clock;
+        this.guard = guard;
+    }
+
+    /**
+     * 时间线超出cardinality限制被丢弃时，返回一个不上报的直方图
+     */
+    public Histogram histogram(String name, Map<String, String> tags) {
+        SeriesKey key = SeriesKey.of(name, tags);
+        Entry entry = histograms.get(key);
+        if (entry == null && guard != null) {
+            key = guard.admit(key);
+            if (key == null) {
+                return discarded;
+            }
+            entry = histograms.get(key);
+        }
+        if (entry == null) {
+            entry = new Entry(key, percentiles, late);
+            Entry old = histograms.putIfAbsent(key, entry);
+            if (old != null) {
+                entry = old;
+            }
+        }
+        return entry.histogram;
+    }
+
+    @Override
+    public void flush(Sender sender) {
+        long now = clock.currentTimeMillis();
+        Entry entry;
+        while ((entry = late.poll()) != null) {
+            entry.queued.set(false);
+            flushRetired(sender, entry, now);
+        }
+        for (Entry live : histograms.values()) {
+            flush(sender, live, now);
+            if (live.idleFlushes >= IDLE_FLUSHES && histograms.remove(live.key, live)) {
+                live.retired = true;
+                flushRetired(sender, live, now);
+            }
+        }
+    }
+
+    private void flushRetired(Sender sender, Entry entry, long now) {
+        try {
+            flush(sender, entry, now);
+        } catch (RuntimeException e) {
+            late.add(entry);
+            throw e;
+        }
+    }
+
+    private void flush(Sender sender, Entry entry, long now) {
+        // 上一个周期没有写入成功的数据点先上报，期间的记录留在直方图中
+        if (entry.unsent != null) {
+            entry.putUnsent(sender);
+        }
+
+        Histogram.Snapshot snapshot = entry.histogram.snapshotAndReset(counts);
+        if (snapshot.getCount() == 0) {
+            entry.idleFlushes++;
+            return;
+        }
+        entry.idleFlushes = 0;
+
+        Metric[] metrics = new Metric[4 + percentiles.length];
+        metrics[0] = metric(entry.countKey, snapshot.getCount(), now);
+        metrics[1] = metric(entry.sumKey, snapshot.getSum(), now);
+        metrics[2] = metric(entry.minKey, snapshot.getMin(), now);
+        metrics[3] = metric(entry.maxKey, snapshot.getMax(), now);
+        for (int i = 0; i < percentiles.length; i++) {
+            metrics[4 + i] = metric(entry.percentileKeys[i], snapshot.percentile(percentiles[i]), now);
+        }
+        entry.unsent = metrics;
+        entry.unsentIndex = 0;
+        entry.putUnsent(sender);
+    }
+
+    int size() {
+        return histograms.size();
+    }
+
+    private static Metric metric(SeriesKey seriesKey, long value, long timestamp) {
+        Metric metric = new Metric(seriesKey, value);
+        metric.setTimestamp(timestamp);
+        return metric;
+    }
+
+    static String percentileSuffix(double percentile) {
+        // 50 -> p50, 99.9 -> p999
+        String s = String.valueOf(percentile);
+        if (s.endsWith(".0")) {
+            s = s.substring(0, s.length() - 2);
+        }
+        return ".p" + s.replace(".", "");
+    }
+
+    private static class Entry {
+        private final SeriesKey key;
+        private final ConcurrentLinkedQueue<Entry> late;
+        // 已经从map中移除
+        private volatile boolean retired;
+        // 已经放入late、还没有补报
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private final Histogram histogram = new Histogram() {
+            @Override
+            public void record(long value) {
+                super.record(value);
+                if (retired && queued.compareAndSet(false, true)) {
+                    late.add(Entry.this);
+                }
+            }
+        };
+        private final SeriesKey countKey;
+        private final SeriesKey sumKey;
+        private final SeriesKey minKey;
+        private final SeriesKey maxKey;
+        private final SeriesKey[] percentileKeys;
+        // put失败（队列已满或已关闭）时还没有写入的数据点，只在flush线程读写
+        private Metric[] unsent;
+        private int unsentIndex;
+        // 连续没有数据的周期数，只在flush线程读写
+        private int idleFlushes;
+
+        Entry(SeriesKey key, double[] percentiles, ConcurrentLinkedQueue<Entry> late) {
+            this.key = key;
+            this.late = late;
+            String name = key.getName();
+            Map<String, String> tags = key.getTags();
+            this.countKey = SeriesKey.of(name + ".count", tags);
+            this.sumKey = SeriesKey.of(name + ".sum", tags);
+            this.minKey = SeriesKey.of(name + ".min", tags);
+            this.maxKey = SeriesKey.of(name + ".max", tags);
+            this.percentileKeys = new SeriesKey[percentiles.length];
+            for (int i = 0; i < percentiles.length; i++) {
+                percentileKeys[i] = SeriesKey.of(name + percentileSuffix(percentiles[i]), tags);
+            }
+        }
+
+        void putUnsent(Sender sender) {
+            while (unsentIndex < unsent.length) {
+                sender.put(unsent[unsentIndex]);
+                unsentIndex++;
+            }
+            unsent = null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.mici.monitor.aggregate;
+
+/**
+ * 一个时间桶内的原始数据点合并成一个数据点的方式
+ */
+public enum RollupAggregation {
+    SUM,
+    /**
+     * 平均值总是以浮点数上报
+     */
+    AVG,
+    MIN,
+    MAX,
+    /**
+     * 时间戳最大的数据点的值
+     */
+    LAST
+}
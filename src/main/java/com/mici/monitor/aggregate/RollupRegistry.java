@@ -0,0 +1,247 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.ValueType;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把匹配rollup规则的原始数据点按时间线放入对齐的时间桶，每个桶只上报一个设置了granularity的数据点。
+ * <ul>
+ * <li>规则按最长匹配的指标名前缀选择，没有匹配规则的数据点和非数值的数据点不经过rollup；</li>
+ * <li>时间桶结束之后的第一次flush上报，新的时间桶的数据点到达时，上一个桶在下一次flush上报；</li>
+ * <li>晚到的数据点计入当前的时间桶，已经上报的时间桶不会重复上报。</li>
+ * </ul>
+ */
+public class RollupRegistry implements Aggregator {
+    // 规则缓存的指标名数量上限，超过后每次按前缀匹配
+    private static final int MAX_CACHED_NAMES = 10000;
+    private static final RollupRule NO_RULE = new RollupRule(1, RollupAggregation.LAST);
+
+    private final String[] prefixes;
+    private final RollupRule[] rules;
+    private final ConcurrentMap<String, RollupRule> ruleCache = new ConcurrentHashMap<String, RollupRule>();
+    private final ConcurrentMap<SeriesKey, Bucket> buckets = new ConcurrentHashMap<SeriesKey, Bucket>();
+    // 被更新的时间桶挤出、等待下一次flush上报的数据点
+    private final ConcurrentLinkedQueue<Metric> closed = new ConcurrentLinkedQueue<Metric>();
+    private final Clock clock;
+
+    /**
+     * @param clock 判断时间桶是否结束的时钟
+     */
+    public RollupRegistry(Map<String, RollupRule> prefixRules, Clock clock) {
+        this.clock = clock;
+        this.prefixes = prefixRules.keySet().toArray(new String[0]);
+        this.rules = new RollupRule[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            this.rules[i] = prefixRules.get(prefixes[i]);
+        }
+    }
+
+    /**
+     * 数据点计入时间桶时返回true，调用方不再发送原始数据点；已经设置了granularity的数据点不再rollup
+     */
+    public boolean record(Metric metric) {
+        if (metric.getGranularity() != null || metric.getValueType() == ValueType.OBJECT) {
+            return false;
+        }
+        RollupRule rule = ruleOf(metric.getName());
+        if (rule == null) {
+            return false;
+        }
+
+        SeriesKey key = metric.toSeriesKey();
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(key, rule);
+                Bucket old = buckets.putIfAbsent(key, bucket);
+                if (old != null) {
+                    bucket = old;
+                }
+            }
+            synchronized (bucket) {
+                // 已经被flush清理的时间线，重新创建
+                if (bucket.removed) {
+                    continue;
+                }
+                Metric previous = bucket.add(metric);
+                if (previous != null) {
+                    closed.add(previous);
+                }
+                return true;
+            }
+        }
+    }
+
+    RollupRule ruleOf(String name) {
+        RollupRule rule = ruleCache.get(name);
+        if (rule == null) {
+            rule = NO_RULE;
+            int matched = -1;
+            for (int i = 0; i < prefixes.length; i++) {
+                if (name.startsWith(prefixes[i]) && (matched < 0 || prefixes[i].length() > prefixes[matched].length())) {
+                    matched = i;
+                    rule = rules[i];
+                }
+            }
+            if (ruleCache.size() < MAX_CACHED_NAMES) {
+                ruleCache.putIfAbsent(name, rule);
+            }
+        }
+        return rule == NO_RULE ? null : rule;
+    }
+
+    @Override
+    public void flush(Sender sender) {
+        flush(sender, false);
+    }
+
+    /**
+     * 关闭前调用，上报所有未结束的时间桶
+     */
+    public void flushAll(Sender sender) {
+        flush(sender, true);
+    }
+
+    private void flush(Sender sender, boolean all) {
+        for (Metric rollup : collect(all)) {
+            sender.put(rollup);
+        }
+    }
+
+    /**
+     * 取出已经结束的时间桶的聚合结果，all为true时包括未结束的时间桶
+     */
+    List<Metric> collect(boolean all) {
+        List<Metric> metrics = new ArrayList<Metric>();
+        Metric metric;
+        while ((metric = closed.poll()) != null) {
+            metrics.add(metric);
+        }
+
+        long now = clock.currentTimeMillis();
+        for (Bucket bucket : buckets.values()) {
+            synchronized (bucket) {
+                if (bucket.count > 0) {
+                    if (all || bucket.start + bucket.intervalMillis <= now) {
+                        metrics.add(bucket.close());
+                    }
+                } else if (bucket.emitted + 2 * bucket.intervalMillis <= now) {
+                    // 两个周期没有数据的时间线不再保留
+                    bucket.removed = true;
+                    buckets.remove(bucket.seriesKey, bucket);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private static class Bucket {
+        private final SeriesKey seriesKey;
+        private final RollupRule rule;
+        private final long intervalMillis;
+        // 以下字段在synchronized (this)中读写
+        private long start;
+        private long emitted = Long.MIN_VALUE / 2;
+        private int count;
+        private boolean hasDouble;
+        private long longSum;
+        private double doubleSum;
+        private long longMin;
+        private long longMax;
+        private double doubleMin;
+        private double doubleMax;
+        private long lastTimestamp;
+        private boolean lastIsDouble;
+        private long lastLong;
+        private double lastDouble;
+        private boolean removed;
+
+        Bucket(SeriesKey seriesKey, RollupRule rule) {
+            this.seriesKey = seriesKey;
+            this.rule = rule;
+            this.intervalMillis = rule.getInterval() * 1000L;
+        }
+
+        /**
+         * 数据点属于更新的时间桶时，返回上一个时间桶的聚合结果
+         */
+        Metric add(Metric metric) {
+            long timestamp = metric.getTimestamp();
+            long bucketStart = timestamp - Math.floorMod(timestamp, intervalMillis);
+
+            Metric previous = null;
+            if (count > 0 && bucketStart > start) {
+                previous = close();
+            }
+            if (count == 0) {
+                start = Math.max(bucketStart, emitted + intervalMillis);
+                hasDouble = false;
+                longSum = 0;
+                doubleSum = 0;
+                longMin = Long.MAX_VALUE;
+                longMax = Long.MIN_VALUE;
+                doubleMin = Double.POSITIVE_INFINITY;
+                doubleMax = Double.NEGATIVE_INFINITY;
+                lastTimestamp = Long.MIN_VALUE;
+            }
+
+            boolean isDouble = metric.getValueType() == ValueType.DOUBLE;
+            long longValue = metric.getLongValue();
+            double doubleValue = isDouble ? metric.getDoubleValue() : longValue;
+            if (isDouble) {
+                hasDouble = true;
+            } else {
+                longSum += longValue;
+                longMin = Math.min(longMin, longValue);
+                longMax = Math.max(longMax, longValue);
+            }
+            doubleSum += doubleValue;
+            doubleMin = Math.min(doubleMin, doubleValue);
+            doubleMax = Math.max(doubleMax, doubleValue);
+            if (timestamp >= lastTimestamp) {
+                lastTimestamp = timestamp;
+                lastIsDouble = isDouble;
+                lastLong = longValue;
+                lastDouble = doubleValue;
+            }
+            count++;
+            return previous;
+        }
+
+        Metric close() {
+            Metric metric;
+            switch (rule.getAggregation()) {
+                case SUM:
+                    metric = hasDouble ? new Metric(seriesKey, doubleSum) : new Metric(seriesKey, longSum);
+                    break;
+                case AVG:
+                    metric = new Metric(seriesKey, doubleSum / count);
+                    break;
+                case MIN:
+                    metric = hasDouble ? new Metric(seriesKey, doubleMin) : new Metric(seriesKey, longMin);
+                    break;
+                case MAX:
+                    metric = hasDouble ? new Metric(seriesKey, doubleMax) : new Metric(seriesKey, longMax);
+                    break;
+                case LAST:
+                default:
+                    metric = lastIsDouble ? new Metric(seriesKey, lastDouble) : new Metric(seriesKey, lastLong);
+            }
+            metric.setTimestamp(start);
+            metric.setGranularity(rule.getGranularity());
+            emitted = start;
+            count = 0;
+            return metric;
+        }
+    }
+}
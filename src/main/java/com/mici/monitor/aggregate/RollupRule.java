@@ -0,0 +1,55 @@
+package com.mici.monitor.aggregate;
+
+/**
+ * 按interval秒对齐的时间桶和桶内的聚合方式
+ */
+public class RollupRule {
+    private final int interval;
+    private final RollupAggregation aggregation;
+    private final String granularity;
+
+    public RollupRule(int interval, RollupAggregation aggregation) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The rollup interval con't be less then 1");
+        }
+        if (aggregation == null) {
+            throw new IllegalArgumentException("The rollup aggregation con't be null");
+        }
+        this.interval = interval;
+        this.aggregation = aggregation;
+        this.granularity = granularity(interval);
+    }
+
+    /**
+     * 按能整除的最大单位表示，例如 10s、1m、6h、1d
+     */
+    static String granularity(int seconds) {
+        if (seconds % 86400 == 0) {
+            return seconds / 86400 + "d";
+        }
+        if (seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public RollupAggregation getAggregation() {
+        return aggregation;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    @Override
+    public String toString() {
+        return aggregation + "/" + granularity;
+    }
+}
@@ -0,0 +1,221 @@
+package com.mici.monitor.cardinality;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.aggregate.Aggregator;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 限制每个指标名下的时间线数量。每个指标名保存一个最多limit个元素的已接纳集合，
+ * 集合满了之后新的 tags 组合按CardinalityPolicy丢弃或者合并到溢出时间线；已经接纳的时间线不受影响。
+ * 另外用HyperLogLog估计每个指标名实际出现过的时间线数量，用来找出超限最严重的指标。
+ * <p>
+ * 每个指标名的集合随已接纳的时间线数量增长，每个时间线16到32字节，最多约 limit * 32 字节，另外HyperLogLog固定1KB；
+ * 最多跟踪maxNames个指标名，超出的指标名不做限制。每个数据点的开销是一次map查找、一次hash计算和几次数组访问。
+ * 计数器、gauge和直方图在为新的时间线创建状态之前通过admit(SeriesKey)检查，超限的时间线不会在预聚合器中占用内存。
+ * 已接纳的集合每隔resetInterval清空一次，让下线的时间线腾出位置；预聚合器中连续几个周期没有数据的时间线也会被移除，
+ * 因此预聚合器占用的内存取决于活跃的时间线数量，不会随清空的次数累积。
+ */
+public class CardinalityGuard implements Aggregator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CardinalityGuard.class);
+    public static final String OVERFLOW_TAG = "cardinality_overflow";
+    private static final int HLL_PRECISION = 10;
+    private static final int TOP_OFFENDERS = 5;
+
+    private final int limit;
+    private final int maxNames;
+    private final CardinalityPolicy policy;
+    private final long resetInterval;
+    private volatile ConcurrentMap<String, NameState> names = new ConcurrentHashMap<String, NameState>();
+    private final LongAdder rejected = new LongAdder();
+    private final Clock clock;
+    private long lastReset;
+    // 只在flush线程使用
+    private long reportedRejected;
+
+    /**
+     * @param clock 判断是否到了清空时间的时钟
+     */
+    public CardinalityGuard(int limit, int maxNames, CardinalityPolicy policy, long resetInterval, Clock clock) {
+        this.limit = limit;
+        this.maxNames = maxNames;
+        this.policy = policy;
+        this.resetInterval = resetInterval;
+        this.clock = clock;
+        this.lastReset = clock.currentTimeMillis();
+    }
+
+    /**
+     * @return 数据点可以写入时返回true（OVERFLOW时数据点已经改到溢出时间线），需要丢弃时返回false
+     */
+    public boolean admit(Metric metric) {
+        NameState state = state(metric.getName());
+        // 溢出时间线本身不再计数
+        if (state == null || metric.getSeriesKey() == state.overflowKey || accept(state, metric.seriesHash())) {
+            return true;
+        }
+        if (policy == CardinalityPolicy.OVERFLOW) {
+            metric.setSeriesKey(state.overflowKey);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 预聚合器为新的时间线创建状态之前调用
+     *
+     * @return 可以使用的时间线，OVERFLOW时超限的时间线换成溢出时间线；需要丢弃时返回null
+     */
+    public SeriesKey admit(SeriesKey seriesKey) {
+        NameState state = state(seriesKey.getName());
+        if (state == null || seriesKey == state.overflowKey || accept(state, seriesKey.hashCode())) {
+            return seriesKey;
+        }
+        return policy == CardinalityPolicy.OVERFLOW ? state.overflowKey : null;
+    }
+
+    /**
+     * 超出maxNames时返回null，不做限制
+     */
+    private NameState state(String name) {
+        ConcurrentMap<String, NameState> current = names;
+        NameState state = current.get(name);
+        if (state == null) {
+            if (current.size() >= maxNames) {
+                return null;
+            }
+            state = new NameState(name, limit);
+            NameState old = current.putIfAbsent(name, state);
+            if (old != null) {
+                state = old;
+            }
+        }
+        return state;
+    }
+
+    private boolean accept(NameState state, int seriesHash) {
+        long hash = mix(seriesHash);
+        state.sketch.add(hash);
+        if (state.admitted.addIfAbsent(hash)) {
+            return true;
+        }
+        state.rejected.increment();
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 被拒绝的数据点总数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 按被拒绝的数据点数从多到少排列的指标名
+     */
+    public List<Offender> getTopOffenders(int n) {
+        List<Offender> offenders = new ArrayList<Offender>();
+        for (NameState state : names.values()) {
+            long count = state.rejected.sum();
+            if (count > 0) {
+                offenders.add(new Offender(state.name, state.sketch.estimate(), count));
+            }
+        }
+        Collections.sort(offenders, new Comparator<Offender>() {
+            @Override
+            public int compare(Offender o1, Offender o2) {
+                return Long.compare(o2.getRejected(), o1.getRejected());
+            }
+        });
+        return offenders.size() > n ? offenders.subList(0, n) : offenders;
+    }
+
+    /**
+     * 在flush线程中调用：有新的拒绝时打印超限最严重的指标名，到期时清空已接纳的时间线
+     */
+    @Override
+    public void flush(Sender sender) {
+        long total = rejected.sum();
+        if (total > reportedRejected) {
+            LOGGER.warn("{} points exceeded the cardinality limit {} of their metric, policy = {}, top offenders: {}",
+                    total - reportedRejected, limit, policy, getTopOffenders(TOP_OFFENDERS));
+            reportedRejected = total;
+        }
+
+        long now = clock.currentTimeMillis();
+        if (now - lastReset >= resetInterval) {
+            names = new ConcurrentHashMap<String, NameState>();
+            lastReset = now;
+        }
+    }
+
+    /**
+     * MurmurHash3 的 fmix64
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class NameState {
+        private final String name;
+        private final SeriesSet admitted;
+        private final HyperLogLog sketch = new HyperLogLog(HLL_PRECISION);
+        private final LongAdder rejected = new LongAdder();
+        private final SeriesKey overflowKey;
+
+        NameState(String name, int limit) {
+            this.name = name;
+            this.admitted = new SeriesSet(limit);
+            this.overflowKey = SeriesKey.of(name, Collections.singletonMap(OVERFLOW_TAG, "true"));
+        }
+    }
+
+    public static class Offender {
+        private final String name;
+        private final long estimatedSeries;
+        private final long rejected;
+
+        Offender(String name, long estimatedSeries, long rejected) {
+            this.name = name;
+            this.estimatedSeries = estimatedSeries;
+            this.rejected = rejected;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * HyperLogLog估计的时间线数量，包括被拒绝的
+         */
+        public long getEstimatedSeries() {
+            return estimatedSeries;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(series~" + estimatedSeries + ", rejected=" + rejected + ")";
+        }
+    }
+}
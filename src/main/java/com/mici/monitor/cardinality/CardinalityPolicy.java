@@ -0,0 +1,15 @@
+package com.mici.monitor.cardinality;
+
+/**
+ * 时间线数量超出限制后对新时间线的处理方式
+ */
+public enum CardinalityPolicy {
+    /**
+     * 丢弃数据点
+     */
+    DROP,
+    /**
+     * 去掉tags，写入 name{cardinality_overflow=true} 这一条时间线
+     */
+    OVERFLOW
+}
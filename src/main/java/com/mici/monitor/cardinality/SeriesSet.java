@@ -0,0 +1,121 @@
+package com.mici.monitor.cardinality;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 容量固定的无锁hash集合，开放寻址，保存时间线的64位hash。元素数达到capacity后不再接受新元素。
+ * 槽位数组从INITIAL_LENGTH开始按元素数翻倍，最大为不小于2 * capacity的2的幂，
+ * 每个元素占用16到32字节。扩容加锁，期间的写入等待扩容完成，读写已有元素不受影响。
+ */
+class SeriesSet {
+    private static final long EMPTY = 0;
+    // 扩容时旧数组中的空槽位标记为MOVED，之后的写入转到新数组
+    private static final long MOVED = 1;
+    private static final int INITIAL_LENGTH = 64;
+
+    private final int capacity;
+    private final int maxLength;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile AtomicLongArray slots;
+
+    SeriesSet(int capacity) {
+        this.capacity = capacity;
+        // 负载因子不超过0.5
+        this.maxLength = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.slots = new AtomicLongArray(Math.min(INITIAL_LENGTH, maxLength));
+    }
+
+    /**
+     * @return 已经存在或者插入成功返回true，集合已满返回false
+     */
+    boolean addIfAbsent(long hash) {
+        if (hash == EMPTY || hash == MOVED) {
+            hash = 2;
+        }
+        AtomicLongArray table = slots;
+        int mask = table.length() - 1;
+        int index = (int) hash & mask;
+        int probes = 0;
+        while (true) {
+            long current = table.get(index);
+            if (current == hash) {
+                return true;
+            }
+            if (current == MOVED) {
+                table = grow(table);
+                mask = table.length() - 1;
+                index = (int) hash & mask;
+                probes = 0;
+                continue;
+            }
+            if (current == EMPTY) {
+                int currentSize = size.get();
+                if (currentSize >= capacity) {
+                    return false;
+                }
+                if (currentSize >= table.length() >> 1 && table.length() < maxLength) {
+                    table = grow(table);
+                    mask = table.length() - 1;
+                    index = (int) hash & mask;
+                    probes = 0;
+                    continue;
+                }
+                if (table.compareAndSet(index, EMPTY, hash)) {
+                    // 并发插入时可能略微超出capacity，最多超出并发线程数
+                    size.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+            // 只有大量线程同时插入、超出负载因子时数组才会被占满
+            if (++probes >= table.length()) {
+                if (table.length() >= maxLength) {
+                    return false;
+                }
+                table = grow(table);
+                mask = table.length() - 1;
+                index = (int) hash & mask;
+                probes = 0;
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * table还是当前数组时扩容为两倍，返回扩容之后的数组
+     */
+    private synchronized AtomicLongArray grow(AtomicLongArray table) {
+        if (slots != table) {
+            return slots;
+        }
+        AtomicLongArray next = new AtomicLongArray(table.length() << 1);
+        int mask = next.length() - 1;
+        for (int i = 0; i < table.length(); i++) {
+            long value = table.get(i);
+            // 空槽位标记为MOVED之后，并发的写入不会再写进旧数组
+            while (value == EMPTY && !table.compareAndSet(i, EMPTY, MOVED)) {
+                value = table.get(i);
+            }
+            if (value == EMPTY) {
+                continue;
+            }
+            int index = (int) value & mask;
+            while (next.get(index) != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            next.set(index, value);
+        }
+        slots = next;
+        return next;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int length() {
+        return slots.length();
+    }
+}
@@ -1,16 +1,55 @@
 package com.mici.monitor.client;
 
-import com.mici.monitor.Metric;
 import com.mici.monitor.MonitorConfig;
 
 import javax.annotation.Resource;
+import java.util.Map;
 
 public class Monitor {
     @Resource
     MonitorConfig config;
 
-    void count(String name){
-        Sender sender = new Sender(config);
-        sender.put(new Metric(name,1));
+    public void count(String name){
+        SenderRegistry.get(config).count(name);
+    }
+
+    public void count(String name, long delta){
+        SenderRegistry.get(config).count(name, delta);
+    }
+
+    public void count(String name, Map<String,String> tags){
+        SenderRegistry.get(config).count(name, tags, 1);
+    }
+
+    public void gauge(String name, long value){
+        SenderRegistry.get(config).gauge(name, value);
+    }
+
+    public void gauge(String name, double value){
+        SenderRegistry.get(config).gauge(name, value);
+    }
+
+    public void gauge(String name, Map<String,String> tags, long value){
+        SenderRegistry.get(config).gauge(name, tags, value);
+    }
+
+    public void gauge(String name, Map<String,String> tags, double value){
+        SenderRegistry.get(config).gauge(name, tags, value);
+    }
+
+    public void histogram(String name, long value){
+        SenderRegistry.get(config).histogram(name, value);
+    }
+
+    public void histogram(String name, Map<String,String> tags, long value){
+        SenderRegistry.get(config).histogram(name, tags, value);
+    }
+
+    public void time(String name, long startNanos){
+        SenderRegistry.get(config).time(name, startNanos);
+    }
+
+    public void time(String name, Map<String,String> tags, long startNanos){
+        SenderRegistry.get(config).time(name, tags, startNanos);
     }
 }
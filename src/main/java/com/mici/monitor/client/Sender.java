@@ -2,31 +2,67 @@ package com.mici.monitor.client;
 
 import com.google.common.util.concurrent.RateLimiter;
 import com.mici.monitor.Metric;
+import com.mici.monitor.MetricPool;
 import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.aggregate.AggregateFlusher;
+import com.mici.monitor.aggregate.CounterRegistry;
+import com.mici.monitor.aggregate.GaugeRegistry;
+import com.mici.monitor.aggregate.Histogram;
+import com.mici.monitor.aggregate.HistogramRegistry;
+import com.mici.monitor.aggregate.RollupRegistry;
+import com.mici.monitor.cardinality.CardinalityGuard;
+import com.mici.monitor.clock.Clock;
+import com.mici.monitor.clock.Clocks;
 import com.mici.monitor.exception.HttpClientInitException;
+import com.mici.monitor.http.Endpoint;
 import com.mici.monitor.http.HttpClient;
 import com.mici.monitor.http.HttpClientFactory;
 import com.mici.monitor.queue.DataQueue;
+import com.mici.monitor.queue.DataQueueFactory;
+import com.mici.monitor.sendPool.BatchController;
 import com.mici.monitor.sendPool.DefaulThreadPool;
+import com.mici.monitor.shard.ConsistentHashRing;
+import com.mici.monitor.shard.Shard;
+import com.mici.monitor.stats.ClientStats;
+import com.mici.monitor.stats.ClientStatsReporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Sender {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Sender.class);
-    private final DataQueue queue;
-    private final DefaulThreadPool defaulThreadPool;
+    // 每个后端节点一个分片，时间线按 name + tags 一致性哈希路由
+    private final List<Shard> shards;
+    private final ConsistentHashRing<Shard> shardRing;
     private final boolean httpCompress;
     private final HttpClient httpclient;
     private RateLimiter rateLimter;
     private final MonitorConfig config;
+    private final CounterRegistry counterRegistry;
+    private final HistogramRegistry histogramRegistry;
+    private final GaugeRegistry gaugeRegistry;
+    private final RollupRegistry rollupRegistry;
+    private final AggregateFlusher aggregateFlusher;
+    private final MetricPool metricPool;
+    private final ClientStats stats;
+    private final CardinalityGuard cardinalityGuard;
+    // 登记到Clocks的时钟，没有配置clock时是共享的CachedClock，关闭时释放
+    private final Clock clock;
+    private final AtomicBoolean clockReleased = new AtomicBoolean(false);
 
     public Sender(MonitorConfig config) throws HttpClientInitException {
         this.config = config;
-        this.httpclient = HttpClientFactory.createHttpClient(config);
+        this.stats = new ClientStats();
+        this.httpclient = HttpClientFactory.createHttpClient(config, this.stats);
+        this.clock = config.getClock() != null ? Clocks.acquire(config.getClock()) : Clocks.acquire(config.getClockResolution());
         this.httpCompress = config.isHttpCompress();
         boolean asyncPut = config.isAsyncPut();
         int maxTPS = config.getMaxTPS();
@@ -34,10 +70,60 @@ public class Sender {
             this.rateLimter = RateLimiter.create(maxTPS);
         }
 
-            this.queue = null;
-            this.defaulThreadPool = null;
+        this.metricPool = config.getMetricPoolSize() > 0 ? new MetricPool(config.getMetricPoolSize()) : null;
+
+        if (asyncPut) {
+            this.shards = new ArrayList<Shard>();
+            for (Endpoint endpoint : config.getEndpoints()) {
+                DataQueue queue = DataQueueFactory.createDataQueue(config, endpoint, this.stats);
+                DefaulThreadPool threadPool = new DefaulThreadPool(queue, this.httpclient, endpoint, this.rateLimter, config, this.stats);
+                this.shards.add(new Shard(endpoint, queue, threadPool));
+            }
+            this.shardRing = new ConsistentHashRing<Shard>(this.shards, config.getShardVirtualNodes());
+            // 预聚合器创建新的时间线之前也要经过cardinalityGuard，先于它们创建
+            if (config.getCardinalityLimit() > 0) {
+                this.cardinalityGuard = new CardinalityGuard(config.getCardinalityLimit(), config.getCardinalityMaxNames(),
+                        config.getCardinalityPolicy(), config.getCardinalityResetInterval(), this.clock);
+            } else {
+                this.cardinalityGuard = null;
+            }
+            this.counterRegistry = new CounterRegistry(this.clock, this.cardinalityGuard);
+            this.aggregateFlusher = new AggregateFlusher(this, config.getAggregateFlushInterval());
+            this.histogramRegistry = new HistogramRegistry(config.getHistogramPercentiles(), this.clock, this.cardinalityGuard);
+            this.gaugeRegistry = new GaugeRegistry(this.clock, this.cardinalityGuard);
+            this.aggregateFlusher.register(this.counterRegistry);
+            this.aggregateFlusher.register(this.histogramRegistry);
+            this.aggregateFlusher.register(this.gaugeRegistry);
+            if (!config.getRollupRules().isEmpty()) {
+                this.rollupRegistry = new RollupRegistry(config.getRollupRules(), this.clock);
+                this.aggregateFlusher.register(this.rollupRegistry);
+            } else {
+                this.rollupRegistry = null;
+            }
+            if (this.cardinalityGuard != null) {
+                this.aggregateFlusher.register(this.cardinalityGuard);
+            }
+            if (config.isClientStatsReport()) {
+                this.aggregateFlusher.register(new ClientStatsReporter(this.stats));
+            }
+        } else {
+            this.shards = null;
+            this.shardRing = null;
+            this.counterRegistry = null;
+            this.histogramRegistry = null;
+            this.gaugeRegistry = null;
+            this.rollupRegistry = null;
+            this.cardinalityGuard = null;
+            this.aggregateFlusher = null;
+        }
 
         this.httpclient.start();
+        if (this.shards != null) {
+            for (Shard shard : this.shards) {
+                shard.getThreadPool().start();
+            }
+            this.aggregateFlusher.start();
+        }
         LOGGER.info("The hitsdb-client has started.");
     }
 
@@ -52,6 +138,9 @@ public class Sender {
         } else {
             gracefulClose();
         }
+        if (this.clockReleased.compareAndSet(false, true)) {
+            Clocks.release(this.clock);
+        }
         LOGGER.info("The hitsdb-client has closed.");
     }
 
@@ -59,7 +148,9 @@ public class Sender {
         boolean async = config.isAsyncPut();
         if (async) {
             // 消费者关闭
-            this.defaulThreadPool.stop(true);
+            for (Shard shard : this.shards) {
+                shard.getThreadPool().stop(true);
+            }
         }
 
         // 客户端关闭
@@ -70,14 +161,26 @@ public class Sender {
         boolean async = config.isAsyncPut();
 
         if (async) {
+            // 上报最后一个周期的聚合数据
+            this.aggregateFlusher.stop();
+            if (this.rollupRegistry != null) {
+                this.rollupRegistry.flushAll(this);
+            }
+
             // 停止写入
-            this.queue.forbiddenSend();
+            for (Shard shard : this.shards) {
+                shard.getQueue().forbiddenSend();
+            }
 
-            // 等待队列消费为空
-            this.queue.waitEmpty();
+            // 等待队列消费为空，各节点的队列同时在消费，依次等待即可
+            for (Shard shard : this.shards) {
+                shard.getQueue().waitEmpty();
+            }
 
             // 消费者关闭
-            this.defaulThreadPool.stop();
+            for (Shard shard : this.shards) {
+                shard.getThreadPool().stop();
+            }
         }
 
         // 客户端关闭
@@ -85,7 +188,174 @@ public class Sender {
     }
 
     public void put(Metric metric) {
-        queue.send(metric);
+        checkWritable();
+        enqueue(metric);
+    }
+
+    /**
+     * 取出一个可复用的Metric，用reset()填充后调用put()。不需要归还，发送线程序列化后会自动回收。
+     */
+    public Metric claim() {
+        if (metricPool == null) {
+            throw new IllegalStateException("The metric pool is disabled, metricPoolSize must be configured to claim metrics.");
+        }
+        return metricPool.claim();
+    }
+
+    /**
+     * 配置了metricPoolSize时使用池中的Metric记录数据点，不产生垃圾；否则创建新的Metric。
+     */
+    public void record(SeriesKey seriesKey, long value) {
+        checkWritable();
+        Metric metric = metricPool == null ? new Metric(seriesKey, value) : metricPool.claim().reset(seriesKey, value);
+        metric.setTimestamp(clock.currentTimeMillis());
+        enqueue(metric);
+    }
+
+    public void record(SeriesKey seriesKey, double value) {
+        checkWritable();
+        Metric metric = metricPool == null ? new Metric(seriesKey, value) : metricPool.claim().reset(seriesKey, value);
+        metric.setTimestamp(clock.currentTimeMillis());
+        enqueue(metric);
+    }
+
+    private void enqueue(Metric metric) {
+        if (cardinalityGuard != null && !cardinalityGuard.admit(metric)) {
+            stats.onDropped(1);
+            metric.release();
+            return;
+        }
+        // 计入时间桶的原始数据点不再发送，由flush上报聚合后的数据点
+        if (rollupRegistry != null && rollupRegistry.record(metric)) {
+            metric.release();
+            return;
+        }
+        try {
+            route(metric).send(metric);
+        } catch (RuntimeException e) {
+            // 没有进入队列，不会有消费者归还
+            metric.release();
+            throw e;
+        }
+    }
+
+    public void count(String name) {
+        this.count(name, 1);
+    }
+
+    public void count(String name, long delta) {
+        checkWritable();
+        if (!counterRegistry.increment(name, delta)) {
+            stats.onDropped(1);
+        }
+    }
+
+    public void count(String name, Map<String, String> tags, long delta) {
+        checkWritable();
+        if (!counterRegistry.increment(name, tags, delta)) {
+            stats.onDropped(1);
+        }
+    }
+
+    /**
+     * 设置gauge的当前值，同一个时间线在一个flush周期内只上报最后一个值
+     */
+    public void gauge(String name, long value) {
+        checkWritable();
+        if (!gaugeRegistry.set(name, value)) {
+            stats.onDropped(1);
+        }
+    }
+
+    public void gauge(String name, double value) {
+        checkWritable();
+        if (!gaugeRegistry.set(name, value)) {
+            stats.onDropped(1);
+        }
+    }
+
+    public void gauge(String name, Map<String, String> tags, long value) {
+        checkWritable();
+        if (!gaugeRegistry.set(name, tags, value)) {
+            stats.onDropped(1);
+        }
+    }
+
+    public void gauge(String name, Map<String, String> tags, double value) {
+        checkWritable();
+        if (!gaugeRegistry.set(name, tags, value)) {
+            stats.onDropped(1);
+        }
+    }
+
+    /**
+     * 取得 name + tags 对应的直方图，调用方可以缓存返回值，之后直接record()
+     */
+    public Histogram histogram(String name, Map<String, String> tags) {
+        checkWritable();
+        return histogramRegistry.histogram(name, tags);
+    }
+
+    public void histogram(String name, long value) {
+        this.histogram(name, null, value);
+    }
+
+    public void histogram(String name, Map<String, String> tags, long value) {
+        this.histogram(name, tags).record(value);
+    }
+
+    /**
+     * 记录从startNanos（System.nanoTime()）到现在的耗时，单位：毫秒
+     */
+    public void time(String name, long startNanos) {
+        this.time(name, null, startNanos);
+    }
+
+    public void time(String name, Map<String, String> tags, long startNanos) {
+        this.histogram(name, tags).recordSince(startNanos);
+    }
+
+    /**
+     * 未配置cardinalityLimit时返回null
+     */
+    public CardinalityGuard getCardinalityGuard() {
+        return cardinalityGuard;
+    }
+
+    /**
+     * gauge、计数器、直方图、rollup和record()使用的时钟
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * 客户端写入链路的内部统计
+     */
+    public ClientStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 每个节点当前的批次大小和等待时间，打开adaptiveBatch时是AdaptiveBatchController
+     */
+    public Map<Endpoint, BatchController> getBatchControllers() {
+        checkWritable();
+        Map<Endpoint, BatchController> controllers = new LinkedHashMap<Endpoint, BatchController>();
+        for (Shard shard : shards) {
+            controllers.put(shard.getEndpoint(), shard.getThreadPool().getBatchController());
+        }
+        return controllers;
+    }
+
+    private DataQueue route(Metric metric) {
+        return shardRing.get(metric.seriesHash()).getQueue();
+    }
+
+    private void checkWritable() {
+        if (shards == null) {
+            throw new IllegalStateException("The client is readonly, asyncPut must be enabled to put metrics.");
+        }
     }
 
 }
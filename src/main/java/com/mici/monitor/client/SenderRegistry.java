@@ -0,0 +1,68 @@
+package com.mici.monitor.client;
+
+import com.mici.monitor.MonitorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 进程级的Sender注册表，每个MonitorConfig只创建并启动一个Sender，之后所有调用复用同一个队列和消费者线程。
+ */
+public final class SenderRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SenderRegistry.class);
+    private static final ConcurrentMap<MonitorConfig, Sender> SENDERS = new ConcurrentHashMap<MonitorConfig, Sender>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                closeAll();
+            }
+        }, "Monitor-Sender-Shutdown"));
+    }
+
+    private SenderRegistry() {
+    }
+
+    public static Sender get(MonitorConfig config) {
+        Sender sender = SENDERS.get(config);
+        if (sender != null) {
+            return sender;
+        }
+
+        synchronized (SENDERS) {
+            sender = SENDERS.get(config);
+            if (sender == null) {
+                sender = new Sender(config);
+                SENDERS.put(config, sender);
+            }
+            return sender;
+        }
+    }
+
+    public static void close(MonitorConfig config) throws IOException {
+        Sender sender;
+        synchronized (SENDERS) {
+            sender = SENDERS.remove(config);
+        }
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    public static void closeAll() {
+        synchronized (SENDERS) {
+            for (Sender sender : SENDERS.values()) {
+                try {
+                    sender.close();
+                } catch (Exception ex) {
+                    LOGGER.error("An error occurred while closing the sender", ex);
+                }
+            }
+            SENDERS.clear();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mici.monitor.clock;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由后台线程每隔resolution毫秒刷新一次的时钟，读取时只读一个volatile字段，不调用System.currentTimeMillis()。
+ * 读到的时间最多比真实时间落后resolution毫秒加上线程调度的延迟；close()之后退回到直接读取系统时间。
+ */
+public class CachedClock implements Clock, Closeable {
+    private final int resolution;
+    private final ScheduledExecutorService ticker;
+    private volatile long now;
+    private volatile boolean closed;
+
+    public CachedClock(int resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("The resolution con't be less then 1");
+        }
+        this.resolution = resolution;
+        this.now = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Monitor-Clock-Tick");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                now = System.currentTimeMillis();
+            }
+        }, resolution, resolution, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        if (closed) {
+            return System.currentTimeMillis();
+        }
+        return now;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ticker.shutdownNow();
+    }
+}
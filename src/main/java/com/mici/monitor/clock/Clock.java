@@ -0,0 +1,8 @@
+package com.mici.monitor.clock;
+
+/**
+ * 数据点时间戳的时钟，单位：毫秒
+ */
+public interface Clock {
+    long currentTimeMillis();
+}
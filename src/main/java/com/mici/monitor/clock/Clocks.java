@@ -0,0 +1,99 @@
+package com.mici.monitor.clock;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metric构造函数和reset()使用的全局时钟，对进程内所有Sender生效。Sender自己的gauge、rollup等使用各自的时钟。
+ * <ul>
+ * <li>Sender启动时通过acquire()登记自己的时钟：没有配置MonitorConfig的clock选项时，
+ * 是按clockResolution共享的CachedClock，同一分辨率的最后一个Sender关闭时停止后台线程；</li>
+ * <li>全局时钟是最近登记、还没有释放的时钟，没有Sender时直接读取系统时间；</li>
+ * <li>set()设置的时钟优先于以上两者，用于测试，调用方负责关闭。</li>
+ * </ul>
+ */
+public final class Clocks {
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile Clock override;
+    private static volatile Clock active = SYSTEM;
+    // 以下字段在synchronized (Clocks.class)中读写
+    // 登记的时钟和使用者数量，按最近一次登记的顺序排列
+    private static final LinkedHashMap<Clock, Integer> users = new LinkedHashMap<Clock, Integer>();
+    private static final Map<Integer, CachedClock> shared = new HashMap<Integer, CachedClock>();
+
+    private Clocks() {
+    }
+
+    public static long currentTimeMillis() {
+        return get().currentTimeMillis();
+    }
+
+    public static Clock get() {
+        Clock clock = override;
+        return clock != null ? clock : active;
+    }
+
+    /**
+     * 替换全局时钟，传入null恢复默认。被替换的时钟不会被关闭
+     */
+    public static void set(Clock clock) {
+        override = clock;
+    }
+
+    /**
+     * 取得分辨率为resolution毫秒的共享CachedClock，第一个使用者启动后台线程。每次acquire都要对应一次release
+     */
+    public static synchronized Clock acquire(int resolution) {
+        CachedClock clock = shared.get(resolution);
+        if (clock == null) {
+            clock = new CachedClock(resolution);
+            shared.put(resolution, clock);
+        }
+        return acquire(clock);
+    }
+
+    /**
+     * 登记调用方自己的时钟作为全局时钟，release时不会关闭它
+     */
+    public static synchronized Clock acquire(Clock clock) {
+        Integer count = users.remove(clock);
+        users.put(clock, count == null ? 1 : count + 1);
+        active = clock;
+        return clock;
+    }
+
+    /**
+     * 最后一个使用者释放时，共享的CachedClock被关闭，全局时钟退回到之前登记的时钟或者系统时间
+     */
+    public static synchronized void release(Clock clock) {
+        Integer count = users.get(clock);
+        if (count == null) {
+            throw new IllegalStateException("The clock has not been acquired");
+        }
+        if (count > 1) {
+            users.put(clock, count - 1);
+            return;
+        }
+
+        users.remove(clock);
+        if (clock instanceof CachedClock) {
+            CachedClock cachedClock = (CachedClock) clock;
+            if (shared.get(cachedClock.getResolution()) == cachedClock) {
+                shared.remove(cachedClock.getResolution());
+                cachedClock.close();
+            }
+        }
+        Clock last = SYSTEM;
+        for (Clock user : users.keySet()) {
+            last = user;
+        }
+        active = last;
+    }
+}
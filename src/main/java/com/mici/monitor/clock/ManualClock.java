@@ -0,0 +1,27 @@
+package com.mici.monitor.clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 只在调用set()或advance()时变化的时钟，用于测试中得到确定的时间戳
+ */
+public class ManualClock implements Clock {
+    private final AtomicLong now;
+
+    public ManualClock(long now) {
+        this.now = new AtomicLong(now);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    public void set(long now) {
+        this.now.set(now);
+    }
+
+    public long advance(long millis) {
+        return now.addAndGet(millis);
+    }
+}
@@ -3,6 +3,10 @@ package com.mici.monitor.exception;
 public class BufferQueueFullException extends RuntimeException {
     private static final long serialVersionUID = -6089496689881016447L;
 
+    public BufferQueueFullException(String message) {
+        super(message);
+    }
+
     public BufferQueueFullException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -0,0 +1,56 @@
+package com.mici.monitor.http;
+
+/**
+ * 后端TSDB节点地址
+ */
+public final class Endpoint {
+    private final String host;
+    private final int port;
+    private final String baseUrl;
+
+    public Endpoint(String host, int port) {
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("The host con't be empty");
+        }
+        if (port <= 0) {
+            throw new IllegalArgumentException("The port con't be less then 1");
+        }
+        this.host = host;
+        this.port = port;
+        this.baseUrl = "http://" + host + ":" + port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Endpoint)) {
+            return false;
+        }
+        Endpoint other = (Endpoint) o;
+        return port == other.port && host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * host.hashCode() + port;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
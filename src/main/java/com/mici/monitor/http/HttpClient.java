@@ -2,7 +2,11 @@ package com.mici.monitor.http;
 
 import com.mici.monitor.exception.HttpClientException;
 import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.serialize.Payload;
+import com.mici.monitor.stats.ClientStats;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
@@ -19,6 +23,7 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,29 +33,29 @@ public class HttpClient {
     private static final Logger logger = LoggerFactory.getLogger(HttpClient.class);
     private static Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
-    private String host;
-    private int port;
+    private final Endpoint endpoint;
     private final CloseableHttpAsyncClient httpclient;
     private final AtomicInteger unCompletedTaskNum;
+    private final ClientStats stats;
 
 
     public String getHost() {
-        return host;
+        return endpoint.getHost();
     }
 
     public int getPort() {
-        return port;
+        return endpoint.getPort();
     }
 
     private final boolean httpCompress;
 
 
-    HttpClient(MonitorConfig config,CloseableHttpAsyncClient httpclient){
-        this.host = config.getHost();
-        this.port = config.getPort();
+    HttpClient(MonitorConfig config,CloseableHttpAsyncClient httpclient,ClientStats stats){
+        this.endpoint = config.getEndpoints().get(0);
         this.httpCompress = config.isHttpCompress();
         this.httpclient = httpclient;
         this.unCompletedTaskNum = new AtomicInteger(0);
+        this.stats = stats;
     }
 
     public void close() throws IOException {
@@ -83,43 +88,163 @@ public class HttpClient {
     }
 
     private HttpResponse execute(HttpEntityEnclosingRequestBase request, String json) throws HttpClientException {
+        HttpEntity entity = null;
         if (json != null && json.length() > 0) {
-            request.addHeader("Content-Type", "application/json");
             if (!this.httpCompress) {
-                request.setEntity(generateStringEntity(json));
+                entity = generateStringEntity(json);
             } else {
+                entity = generateGZIPCompressEntity(json.getBytes(DEFAULT_CHARSET));
+            }
+        }
+        return execute(request, entity);
+    }
+
+    private HttpEntity generatePayloadEntity(Payload payload) {
+        if (payload == null || payload.size() == 0) {
+            return null;
+        }
+        // Payload在序列化时已经按配置压缩过
+        String contentType = payload.getContentType() == null ? "application/json" : payload.getContentType();
+        PayloadEntity payloadEntity = new PayloadEntity(payload, contentType);
+        payloadEntity.setContentEncoding(payload.getContentEncoding());
+        return payloadEntity;
+    }
+
+    private void setEntity(HttpEntityEnclosingRequestBase request, HttpEntity entity) {
+        if (entity != null) {
+            // 只有Payload可能是二进制格式，其他请求体都是JSON
+            String contentType = entity instanceof PayloadEntity ? entity.getContentType().getValue() : "application/json";
+            request.addHeader("Content-Type", contentType);
+            if (this.httpCompress) {
                 request.addHeader("Accept-Encoding", "gzip, deflate");
-                request.setEntity(generateGZIPCompressEntity(json));
             }
+            request.setEntity(entity);
         }
+    }
+
+    /**
+     * 同步等待响应。等待期间被中断时继续等待请求结束，之后恢复中断标记；在途请求数只在请求结束的回调中减少，
+     * close()不会在请求结束之前关闭IO reactor
+     */
+    private HttpResponse execute(HttpEntityEnclosingRequestBase request, HttpEntity entity) throws HttpClientException {
+        setEntity(request, entity);
 
         unCompletedTaskNum.incrementAndGet();
-        Future<HttpResponse> future = httpclient.execute(request, null);
+        final long start = System.nanoTime();
+        Future<HttpResponse> future;
         try {
-            HttpResponse httpResponse = future.get();
-            return httpResponse;
-        } catch (InterruptedException e) {
+            future = httpclient.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse result) {
+                    onRequestComplete(start, result);
+                    unCompletedTaskNum.decrementAndGet();
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    onRequestComplete(start, null);
+                    unCompletedTaskNum.decrementAndGet();
+                }
+
+                @Override
+                public void cancelled() {
+                    onRequestComplete(start, null);
+                    unCompletedTaskNum.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            onRequestComplete(start, null);
+            unCompletedTaskNum.decrementAndGet();
             throw new HttpClientException(e);
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
         } catch (ExecutionException e) {
             throw new HttpClientException(e);
-        } catch (UnsupportedOperationException e) {
+        } catch (CancellationException e) {
             throw new HttpClientException(e);
         } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void executeAsync(HttpEntityEnclosingRequestBase request, HttpEntity entity, final FutureCallback<HttpResponse> callback) {
+        setEntity(request, entity);
+
+        unCompletedTaskNum.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            httpclient.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse result) {
+                    onRequestComplete(start, result);
+                    try {
+                        callback.completed(result);
+                    } finally {
+                        unCompletedTaskNum.decrementAndGet();
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    onRequestComplete(start, null);
+                    try {
+                        callback.failed(ex);
+                    } finally {
+                        unCompletedTaskNum.decrementAndGet();
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    onRequestComplete(start, null);
+                    try {
+                        callback.cancelled();
+                    } finally {
+                        unCompletedTaskNum.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            onRequestComplete(start, null);
             unCompletedTaskNum.decrementAndGet();
+            throw new HttpClientException(e);
+        }
+    }
+
+    /**
+     * response为空表示请求异常
+     */
+    private void onRequestComplete(long start, HttpResponse response) {
+        boolean failed = true;
+        if (response != null) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            failed = statusCode < 200 || statusCode >= 300;
         }
+        stats.onHttpRequest(System.nanoTime() - start, failed);
     }
 
     private StringEntity generateStringEntity(String json) {
-        StringEntity stringEntity = new StringEntity(json, Charset.forName("UTF-8"));
+        StringEntity stringEntity = new StringEntity(json, DEFAULT_CHARSET);
         return stringEntity;
     }
 
-    private ByteArrayEntity generateGZIPCompressEntity(String json) {
+    private ByteArrayEntity generateGZIPCompressEntity(byte[] bytes) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         GZIPOutputStream gzip = null;
         try {
             gzip = new GZIPOutputStream(baos);
-            gzip.write(json.getBytes(DEFAULT_CHARSET));
+            gzip.write(bytes);
         } catch (IOException e) {
             throw new HttpClientException(e);
         } finally {
@@ -150,6 +275,37 @@ public class HttpClient {
         return execute(request, json);
     }
 
+    /**
+     * 发送已经序列化好的Payload，Payload由调用方在请求结束后释放。
+     */
+    public HttpResponse post(String apiPath, Payload payload) throws HttpClientException {
+        return this.post(endpoint, apiPath, payload);
+    }
+
+    /**
+     * 发送Payload到指定的节点
+     */
+    public HttpResponse post(Endpoint endpoint, String apiPath, Payload payload) throws HttpClientException {
+        String httpFullAPI = getUrl(endpoint, apiPath);
+        URI uri = createURI(httpFullAPI, null);
+        final HttpPost request = new HttpPost(uri);
+        return execute(request, generatePayloadEntity(payload));
+    }
+
+    /**
+     * 异步发送Payload，请求结束后在IO线程中回调callback，调用方需要在回调中释放Payload。
+     */
+    public void postAsync(String apiPath, Payload payload, FutureCallback<HttpResponse> callback) throws HttpClientException {
+        this.postAsync(endpoint, apiPath, payload, callback);
+    }
+
+    public void postAsync(Endpoint endpoint, String apiPath, Payload payload, FutureCallback<HttpResponse> callback) throws HttpClientException {
+        String httpFullAPI = getUrl(endpoint, apiPath);
+        URI uri = createURI(httpFullAPI, null);
+        final HttpPost request = new HttpPost(uri);
+        executeAsync(request, generatePayloadEntity(payload), callback);
+    }
+
     private URI createURI(String httpFullAPI, Map<String, String> params) {
         URIBuilder builder;
         try {
@@ -174,7 +330,11 @@ public class HttpClient {
     }
 
     private String getUrl(String apiPath) {
-        return "http://" + host + ":" + port + apiPath;
+        return getUrl(endpoint, apiPath);
+    }
+
+    private String getUrl(Endpoint endpoint, String apiPath) {
+        return endpoint.getBaseUrl() + apiPath;
     }
 
     public void start() {
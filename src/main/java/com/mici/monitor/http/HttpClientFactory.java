@@ -2,6 +2,7 @@ package com.mici.monitor.http;
 
 import com.mici.monitor.MonitorConfig;
 import com.mici.monitor.exception.HttpClientInitException;
+import com.mici.monitor.stats.ClientStats;
 import org.apache.http.ConnectionReuseStrategy;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
@@ -28,6 +29,10 @@ public class HttpClientFactory {
 
 
     public static HttpClient createHttpClient(MonitorConfig config) throws HttpClientInitException {
+        return createHttpClient(config, new ClientStats());
+    }
+
+    public static HttpClient createHttpClient(MonitorConfig config, ClientStats stats) throws HttpClientInitException {
         Objects.requireNonNull(config);
 
         // 创建 ConnectingIOReactor
@@ -41,7 +46,7 @@ public class HttpClientFactory {
         CloseableHttpAsyncClient httpAsyncClient = createPoolingHttpClient(config,cm);
 
         // 组合生产HttpClientImpl
-        HttpClient httpClientImpl = new HttpClient(config,httpAsyncClient);
+        HttpClient httpClientImpl = new HttpClient(config,httpAsyncClient,stats);
 
         return httpClientImpl;
     }
@@ -66,7 +71,8 @@ public class HttpClientFactory {
         RequestConfig requestConfig = initRequestConfig(config);
 
         if (httpConnectionPool > 0) {
-            cm.setMaxTotal(httpConnectionPool);
+            // 每个节点分配httpConnectionPool个连接
+            cm.setMaxTotal(httpConnectionPool * config.getEndpoints().size());
             cm.setDefaultMaxPerRoute(httpConnectionPool);
             cm.closeExpiredConnections();
         }
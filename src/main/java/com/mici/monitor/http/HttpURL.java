@@ -2,5 +2,7 @@ package com.mici.monitor.http;
 
 public class HttpURL {
     public final static String PUT = "/api/put";
+    // BinaryMetricEncoder格式的写入接口
+    public final static String PUT_BINARY = "/api/put/binary";
 
 }
@@ -0,0 +1,111 @@
+package com.mici.monitor.http;
+
+import com.mici.monitor.serialize.Payload;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接从Payload的块中向连接写数据的请求体。
+ * 实现HttpAsyncContentProducer后，异步客户端不会再把实体包装成InputStream拷贝一遍。
+ * Payload的生命周期由调用方管理，close()只重置读取位置，便于重试时重复发送。
+ */
+public class PayloadEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+    private final Payload payload;
+    private int chunkIndex;
+    private ByteBuffer current;
+
+    public PayloadEntity(Payload payload, String contentType) {
+        this.payload = payload;
+        setContentType(contentType);
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+        while (true) {
+            if (current == null || !current.hasRemaining()) {
+                if (chunkIndex == payload.getChunkCount()) {
+                    encoder.complete();
+                    return;
+                }
+                current = ByteBuffer.wrap(payload.getChunk(chunkIndex), 0, payload.getChunkLength(chunkIndex));
+                chunkIndex++;
+            }
+
+            encoder.write(current);
+            if (current.hasRemaining()) {
+                // 通道暂时写不下，等待下一次回调
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return payload.size();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new PayloadInputStream(payload);
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        payload.writeTo(outstream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunkIndex = 0;
+        current = null;
+    }
+
+    private static class PayloadInputStream extends InputStream {
+        private final Payload payload;
+        private int chunkIndex;
+        private int offset;
+
+        PayloadInputStream(Payload payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (chunkIndex < payload.getChunkCount() && offset == payload.getChunkLength(chunkIndex)) {
+                chunkIndex++;
+                offset = 0;
+            }
+            if (chunkIndex == payload.getChunkCount()) {
+                return -1;
+            }
+            int n = Math.min(len, payload.getChunkLength(chunkIndex) - offset);
+            System.arraycopy(payload.getChunk(chunkIndex), offset, b, off, n);
+            offset += n;
+            return n;
+        }
+    }
+}
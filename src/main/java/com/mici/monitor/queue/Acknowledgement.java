@@ -0,0 +1,9 @@
+package com.mici.monitor.queue;
+
+/**
+ * 一批从磁盘回放的数据点的确认。消费者发送完成（成功或者最终放弃）后调用，
+ * 之前溢出日志不会推进已确认位置，进程退出后这批数据点会被再次回放。
+ */
+public interface Acknowledgement {
+    void acknowledge();
+}
@@ -0,0 +1,11 @@
+package com.mici.monitor.queue;
+
+/**
+ * 忙等，延迟最低，但等待期间会占满一个CPU核。
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void idle(int attempts) {
+    }
+}
@@ -2,6 +2,8 @@ package com.mici.monitor.queue;
 
 import com.mici.monitor.Metric;
 
+import java.util.List;
+
 public interface DataQueue {
     void send(Metric metric);
 
@@ -9,9 +11,21 @@ public interface DataQueue {
 
     Metric receive(int timeout) throws InterruptedException;
 
+    /**
+     * 一次取出队列中当前可用的数据，最多max个。队列为空时最多等待timeout毫秒，直到有数据到达。
+     *
+     * @return 本次取出的数据个数
+     */
+    int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException;
+
     void forbiddenSend();
 
     void waitEmpty();
 
     boolean isEmpty();
+
+    /**
+     * 当前队列中的数据个数，并发写入时为近似值
+     */
+    int size();
 }
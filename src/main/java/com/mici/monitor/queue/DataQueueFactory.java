@@ -0,0 +1,81 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.Priority;
+import com.mici.monitor.http.Endpoint;
+import com.mici.monitor.stats.ClientStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+public class DataQueueFactory {
+
+    public static DataQueue createDataQueue(MonitorConfig config) {
+        return createDataQueue(config, config.getEndpoints().get(0));
+    }
+
+    /**
+     * 为一个节点创建队列。配置了多个节点时，每个节点溢出到spillDirectory下以节点命名的子目录。
+     */
+    public static DataQueue createDataQueue(MonitorConfig config, Endpoint endpoint) {
+        return createDataQueue(config, endpoint, null);
+    }
+
+    /**
+     * stats不为空时写入的数据点和队列满的次数计入stats
+     */
+    public static DataQueue createDataQueue(MonitorConfig config, Endpoint endpoint, ClientStats stats) {
+        Objects.requireNonNull(config);
+
+        int size = config.getBatchPutBufferSize();
+        int waitCloseTimeLimit = config.getBatchPutTimeLimit();
+        boolean backpressure = config.isBackpressure();
+
+        DataQueue queue;
+        if (config.isPriorityLanes()) {
+            // 每个通道都能容纳全部容量，总量由PriorityLaneQueue控制
+            Priority[] priorities = Priority.values();
+            DataQueue[] lanes = new DataQueue[priorities.length];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = createQueue(config.getQueueType(), size, waitCloseTimeLimit, false, config.getWaitStrategy());
+            }
+            queue = new PriorityLaneQueue(lanes, config.getPriorityWeights(), size, backpressure,
+                    config.getPriorityPrefixes(), config.getWaitStrategy(), waitCloseTimeLimit, stats);
+        } else {
+            queue = createQueue(config.getQueueType(), size, waitCloseTimeLimit, backpressure, config.getWaitStrategy());
+        }
+
+        if (config.getSpillDirectory() != null) {
+            File spillDirectory = new File(config.getSpillDirectory());
+            if (config.getEndpoints().size() > 1) {
+                spillDirectory = new File(spillDirectory, endpoint.getHost() + "_" + endpoint.getPort());
+            }
+            int highWaterMark = Math.max(1, (int) (size * config.getSpillHighWaterMark()));
+            try {
+                queue = new SpillQueue(queue, spillDirectory, highWaterMark,
+                        config.getSpillSegmentSize(), config.getSpillMaxSegments(), backpressure, config.getWaitStrategy(),
+                        waitCloseTimeLimit);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can not open the spill directory " + spillDirectory, e);
+            }
+        }
+
+        if (stats != null) {
+            queue = new InstrumentedQueue(queue, stats);
+            stats.addQueue(queue);
+        }
+        return queue;
+    }
+
+    private static DataQueue createQueue(QueueType queueType, int size, int waitCloseTimeLimit, boolean backpressure,
+                                         WaitStrategy waitStrategy) {
+        switch (queueType) {
+            case RING_BUFFER:
+                return new RingBufferQueue(size, waitCloseTimeLimit, backpressure, waitStrategy);
+            case ARRAY_BLOCKING:
+            default:
+                return new MetricQueue(size, waitCloseTimeLimit, backpressure);
+        }
+    }
+}
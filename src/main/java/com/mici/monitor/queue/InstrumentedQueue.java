@@ -0,0 +1,66 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.exception.BufferQueueFullException;
+import com.mici.monitor.stats.ClientStats;
+
+import java.util.List;
+
+/**
+ * 在写入时更新ClientStats的DataQueue装饰器，统计写入的数据点数和队列满的次数
+ */
+public class InstrumentedQueue implements DataQueue {
+    private final DataQueue queue;
+    private final ClientStats stats;
+
+    public InstrumentedQueue(DataQueue queue, ClientStats stats) {
+        this.queue = queue;
+        this.stats = stats;
+    }
+
+    @Override
+    public void send(Metric metric) {
+        try {
+            queue.send(metric);
+        } catch (BufferQueueFullException e) {
+            stats.onQueueFull();
+            throw e;
+        }
+        stats.onEnqueued();
+    }
+
+    @Override
+    public Metric receive() throws InterruptedException {
+        return queue.receive();
+    }
+
+    @Override
+    public Metric receive(int timeout) throws InterruptedException {
+        return queue.receive(timeout);
+    }
+
+    @Override
+    public int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException {
+        return queue.drainTo(metrics, max, timeout);
+    }
+
+    @Override
+    public void forbiddenSend() {
+        queue.forbiddenSend();
+    }
+
+    @Override
+    public void waitEmpty() {
+        queue.waitEmpty();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
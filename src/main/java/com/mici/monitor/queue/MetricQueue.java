@@ -5,6 +5,7 @@ import com.mici.monitor.exception.BufferQueueFullException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -55,6 +56,22 @@ public class MetricQueue implements DataQueue{
         return point;
     }
 
+    @Override
+    public int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException {
+        int count = metricQueue.drainTo(metrics, max);
+        if (count > 0 || max <= 0) {
+            return count;
+        }
+
+        // 队列为空才阻塞等待
+        Metric metric = metricQueue.poll(timeout, TimeUnit.MILLISECONDS);
+        if (metric == null) {
+            return 0;
+        }
+        metrics.add(metric);
+        return 1 + metricQueue.drainTo(metrics, max - 1);
+    }
+
     @Override
     public void forbiddenSend() {
         forbiddenWrite.compareAndSet(false, true);
@@ -94,4 +111,9 @@ public class MetricQueue implements DataQueue{
     public boolean isEmpty() {
         return metricQueue.isEmpty();
     }
+
+    @Override
+    public int size() {
+        return metricQueue.size();
+    }
 }
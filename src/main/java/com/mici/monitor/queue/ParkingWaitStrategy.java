@@ -0,0 +1,32 @@
+package com.mici.monitor.queue;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 自旋、让出CPU之后挂起线程一小段时间，CPU占用最低，默认使用该策略。
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private final long parkNanos;
+
+    public ParkingWaitStrategy() {
+        this(100000L);
+    }
+
+    public ParkingWaitStrategy(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    @Override
+    public void idle(int attempts) {
+        if (attempts < SPIN_TRIES) {
+            return;
+        }
+        if (attempts < YIELD_TRIES) {
+            Thread.yield();
+            return;
+        }
+        LockSupport.parkNanos(parkNanos);
+    }
+}
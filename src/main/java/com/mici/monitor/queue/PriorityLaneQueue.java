@@ -0,0 +1,292 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.Priority;
+import com.mici.monitor.exception.BufferQueueFullException;
+import com.mici.monitor.stats.ClientStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按Priority分成多个通道的DataQueue，所有通道共享capacity个数据点的容量。
+ * <ul>
+ * <li>数据点的优先级取Metric.getPriority()，为空时按指标名最长匹配的前缀决定，都没有时为NORMAL；</li>
+ * <li>drainTo按权重做差额轮询（deficit round robin）：每次每个通道获得 max * weight / totalWeight 的配额，
+ * 不足一个数据点的余数和没有用完的配额累积到下一次，通道为空时清零；配额分完之后批次还没满，再按优先级从高到低补满；</li>
+ * <li>容量满时，优先级更高的数据点挤掉最低的非空通道中最早的数据点；
+ * 没有更低的数据点可以挤掉时，按backpressure阻塞等待或抛出BufferQueueFullException。</li>
+ * </ul>
+ */
+public class PriorityLaneQueue implements DataQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriorityLaneQueue.class);
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final DataQueue[] lanes;
+    private final int[] weights;
+    private final int totalWeight;
+    // 以 1/totalWeight 个数据点为单位，保留按比例分配时的余数
+    private final long[] deficit;
+    private final int capacity;
+    private final AtomicInteger size = new AtomicInteger();
+    private final boolean backpressure;
+    private final String[] prefixes;
+    private final Priority[] prefixPriorities;
+    private final WaitStrategy waitStrategy;
+    private final int waitCloseTimeLimit;
+    private final ClientStats stats;
+    private final AtomicBoolean forbiddenWrite = new AtomicBoolean(false);
+
+    /**
+     * @param lanes   每个优先级一个通道，按Priority的顺序，每个通道的容量不小于capacity
+     * @param weights 每个通道的权重
+     * @param stats   为空时不统计被挤掉的数据点
+     */
+    public PriorityLaneQueue(DataQueue[] lanes, int[] weights, int capacity, boolean backpressure,
+                             Map<String, Priority> prefixPriorities, WaitStrategy waitStrategy,
+                             int waitCloseTimeLimit, ClientStats stats) {
+        if (lanes.length != PRIORITIES.length || weights.length != PRIORITIES.length) {
+            throw new IllegalArgumentException("There must be one lane and one weight for each priority");
+        }
+        this.lanes = lanes;
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+        this.waitStrategy = waitStrategy;
+        this.waitCloseTimeLimit = waitCloseTimeLimit;
+        this.stats = stats;
+
+        this.weights = weights.clone();
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        this.totalWeight = total;
+        this.deficit = new long[weights.length];
+
+        this.prefixes = prefixPriorities.keySet().toArray(new String[0]);
+        this.prefixPriorities = new Priority[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            this.prefixPriorities[i] = prefixPriorities.get(prefixes[i]);
+        }
+    }
+
+    Priority priorityOf(Metric metric) {
+        Priority priority = metric.getPriority();
+        if (priority != null) {
+            return priority;
+        }
+        String name = metric.getName();
+        int matched = -1;
+        for (int i = 0; i < prefixes.length; i++) {
+            if (name.startsWith(prefixes[i]) && (matched < 0 || prefixes[i].length() > prefixes[matched].length())) {
+                matched = i;
+            }
+        }
+        return matched < 0 ? Priority.NORMAL : prefixPriorities[matched];
+    }
+
+    @Override
+    public void send(Metric metric) {
+        if (forbiddenWrite.get()) {
+            throw new IllegalStateException("client has been closed.");
+        }
+
+        int lane = priorityOf(metric).ordinal();
+        int attempts = 0;
+        while (true) {
+            int current = size.get();
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    lanes[lane].send(metric);
+                    return;
+                }
+                continue;
+            }
+
+            // 容量已满，从更低优先级的通道挤出一个数据点，容量计数不变
+            if (shed(lane)) {
+                lanes[lane].send(metric);
+                return;
+            }
+
+            if (!backpressure) {
+                throw new BufferQueueFullException("The buffer queue is full.");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.error("Client Thread been Interrupted.");
+                return;
+            }
+            waitStrategy.idle(attempts++);
+        }
+    }
+
+    /**
+     * 丢弃比lane优先级低的通道中最早的一个数据点
+     */
+    private boolean shed(int lane) {
+        for (int i = lanes.length - 1; i > lane; i--) {
+            Metric victim;
+            try {
+                victim = lanes[i].receive(0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (victim != null) {
+                if (stats != null) {
+                    stats.onDropped(1);
+                }
+                victim.release();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Metric receive() throws InterruptedException {
+        int attempts = 0;
+        while (true) {
+            Metric metric = poll();
+            if (metric != null) {
+                return metric;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempts++);
+        }
+    }
+
+    @Override
+    public Metric receive(int timeout) throws InterruptedException {
+        Metric metric = poll();
+        if (metric != null) {
+            return metric;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle(attempts++);
+            metric = poll();
+            if (metric != null) {
+                return metric;
+            }
+        }
+    }
+
+    private Metric poll() throws InterruptedException {
+        for (DataQueue lane : lanes) {
+            Metric metric = lane.receive(0);
+            if (metric != null) {
+                size.decrementAndGet();
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException {
+        int count = drain(metrics, max);
+        if (count > 0 || max <= 0) {
+            return count;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return 0;
+            }
+            waitStrategy.idle(attempts++);
+            count = drain(metrics, max);
+            if (count > 0) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 多个消费者线程共享配额，取数据的过程加锁，等待在锁外
+     */
+    private synchronized int drain(List<Metric> metrics, int max) throws InterruptedException {
+        int count = 0;
+        for (int i = 0; i < lanes.length && count < max; i++) {
+            deficit[i] += (long) max * weights[i];
+            int quota = (int) Math.min(deficit[i] / totalWeight, max - count);
+            if (quota > 0) {
+                int taken = lanes[i].drainTo(metrics, quota, 0);
+                count += taken;
+                deficit[i] -= (long) taken * totalWeight;
+            }
+            if (lanes[i].isEmpty()) {
+                deficit[i] = 0;
+            }
+        }
+
+        // 配额之外的空间按优先级补满，不让批次因为配额而变小
+        // 补满的部分也从配额中扣除，小批次下长期的比例仍然按权重；
+        // 欠下的配额最多一轮，单独消费积压的通道之后不会在竞争时长期拿不到配额
+        for (int i = 0; i < lanes.length && count < max; i++) {
+            int taken = lanes[i].drainTo(metrics, max - count, 0);
+            count += taken;
+            deficit[i] = Math.max(deficit[i] - (long) taken * totalWeight, -(long) max * weights[i]);
+        }
+
+        size.addAndGet(-count);
+        return count;
+    }
+
+    @Override
+    public void forbiddenSend() {
+        forbiddenWrite.compareAndSet(false, true);
+    }
+
+    @Override
+    public void waitEmpty() {
+        // 等待为空之前，必须已经设置了禁止写入
+        if (!forbiddenWrite.get()) {
+            throw new IllegalStateException(
+                    "The queue is still allowed to write data. you must first call the forbiddenSend() method");
+        }
+
+        while (!isEmpty()) {
+            try {
+                Thread.sleep(waitCloseTimeLimit);
+            } catch (InterruptedException e) {
+                LOGGER.warn("The waitEmpty() method is being illegally interrupted");
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (DataQueue lane : lanes) {
+            if (!lane.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+}
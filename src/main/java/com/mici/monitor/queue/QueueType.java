@@ -0,0 +1,13 @@
+package com.mici.monitor.queue;
+
+public enum QueueType {
+    /**
+     * 基于ArrayBlockingQueue的MetricQueue
+     */
+    ARRAY_BLOCKING,
+
+    /**
+     * 基于无锁环形队列的RingBufferQueue
+     */
+    RING_BUFFER
+}
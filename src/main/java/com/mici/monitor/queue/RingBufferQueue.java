@@ -0,0 +1,162 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于无锁环形队列的DataQueue，生产者和消费者之间没有共享锁，
+ * 队列满或空时按WaitStrategy等待。
+ */
+public class RingBufferQueue implements DataQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RingBufferQueue.class);
+    private final RingBuffer<Metric> ringBuffer;
+    private final AtomicBoolean forbiddenWrite = new AtomicBoolean(false);
+    private final int waitCloseTimeLimit;
+    private final boolean backpressure;
+    private final WaitStrategy waitStrategy;
+
+    public RingBufferQueue(int size, int waitCloseTimeLimit, boolean backpressure, WaitStrategy waitStrategy) {
+        this.ringBuffer = new RingBuffer<Metric>(size);
+        this.waitCloseTimeLimit = waitCloseTimeLimit;
+        this.backpressure = backpressure;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void send(Metric metric) {
+        if (forbiddenWrite.get()) {
+            throw new IllegalStateException("client has been closed.");
+        }
+
+        if (ringBuffer.offer(metric)) {
+            return;
+        }
+
+        if (!this.backpressure) {
+            throw new BufferQueueFullException("The buffer queue is full.");
+        }
+
+        int attempts = 0;
+        while (!ringBuffer.offer(metric)) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.error("Client Thread been Interrupted.");
+                return;
+            }
+            waitStrategy.idle(attempts++);
+        }
+    }
+
+    @Override
+    public Metric receive() throws InterruptedException {
+        int attempts = 0;
+        while (true) {
+            Metric metric = ringBuffer.poll();
+            if (metric != null) {
+                return metric;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempts++);
+        }
+    }
+
+    @Override
+    public Metric receive(int timeout) throws InterruptedException {
+        Metric metric = ringBuffer.poll();
+        if (metric != null) {
+            return metric;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle(attempts++);
+            metric = ringBuffer.poll();
+            if (metric != null) {
+                return metric;
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException {
+        int count = drain(metrics, max);
+        if (count > 0 || max <= 0) {
+            return count;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return 0;
+            }
+            waitStrategy.idle(attempts++);
+            count = drain(metrics, max);
+            if (count > 0) {
+                return count;
+            }
+        }
+    }
+
+    private int drain(List<Metric> metrics, int max) {
+        int count = 0;
+        while (count < max) {
+            Metric metric = ringBuffer.poll();
+            if (metric == null) {
+                break;
+            }
+            metrics.add(metric);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void forbiddenSend() {
+        forbiddenWrite.compareAndSet(false, true);
+    }
+
+    @Override
+    public void waitEmpty() {
+        // 等待为空之前，必须已经设置了禁止写入
+        if (!forbiddenWrite.get()) {
+            throw new IllegalStateException(
+                    "The queue is still allowed to write data. you must first call the forbiddenSend() method");
+        }
+
+        while (!ringBuffer.isEmpty()) {
+            try {
+                Thread.sleep(waitCloseTimeLimit);
+            } catch (InterruptedException e) {
+                LOGGER.warn("The waitEmpty() method is being illegally interrupted");
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ringBuffer.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return ringBuffer.size();
+    }
+}
@@ -0,0 +1,185 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.ValueType;
+import com.mici.monitor.serialize.MetricEncoder;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 溢出到磁盘的数据点的二进制格式。
+ */
+class SpillCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    // Object类型的数值，分别读回为BigDecimal和Double，序列化结果和溢出前相同
+    private static final byte TYPE_NUMBER = 5;
+    private static final byte TYPE_DOUBLE_OBJECT = 6;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    /**
+     * 编码到内部缓冲区，返回的ByteBuffer在下一次调用前有效
+     */
+    ByteBuffer encode(Metric metric) {
+        while (true) {
+            scratch.clear();
+            try {
+                write(metric, scratch);
+                scratch.flip();
+                return scratch;
+            } catch (java.nio.BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void write(Metric metric, ByteBuffer buffer) {
+        writeString(buffer, metric.getName());
+        buffer.putLong(metric.getTimestamp());
+
+        if (metric.getValueType() == ValueType.LONG) {
+            buffer.put(TYPE_LONG);
+            buffer.putLong(metric.getLongValue());
+        } else if (metric.getValueType() == ValueType.DOUBLE) {
+            buffer.put(TYPE_DOUBLE);
+            buffer.putDouble(metric.getDoubleValue());
+        } else {
+            writeObjectValue(buffer, metric.getValue());
+        }
+
+        Map<String, String> tags = metric.getTags();
+        buffer.putShort((short) tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            writeString(buffer, tag.getKey());
+            writeString(buffer, tag.getValue());
+        }
+
+        writeNullableString(buffer, metric.getGranularity());
+        Long version = metric.getVersion();
+        buffer.put((byte) (version == null ? 0 : 1));
+        if (version != null) {
+            buffer.putLong(version);
+        }
+    }
+
+    private static void writeObjectValue(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            buffer.put(TYPE_BOOLEAN);
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            buffer.put(TYPE_NUMBER);
+            writeString(buffer, value.toString());
+        } else if (value instanceof Number) {
+            Number number = (Number) value;
+            if (MetricEncoder.isIntegral(number)) {
+                buffer.put(TYPE_NUMBER);
+                writeString(buffer, Long.toString(number.longValue()));
+            } else {
+                buffer.put(TYPE_DOUBLE_OBJECT);
+                buffer.putDouble(number.doubleValue());
+            }
+        } else {
+            buffer.put(TYPE_STRING);
+            writeString(buffer, value.toString());
+        }
+    }
+
+    Metric decode(ByteBuffer buffer) {
+        String name = readString(buffer);
+        long timestamp = buffer.getLong();
+
+        Object value = null;
+        long longValue = 0;
+        double doubleValue = 0;
+        byte type = buffer.get();
+        switch (type) {
+            case TYPE_LONG:
+                longValue = buffer.getLong();
+                break;
+            case TYPE_DOUBLE:
+                doubleValue = buffer.getDouble();
+                break;
+            case TYPE_BOOLEAN:
+                value = buffer.get() != 0;
+                break;
+            case TYPE_STRING:
+                value = readString(buffer);
+                break;
+            case TYPE_NUMBER:
+                value = new BigDecimal(readString(buffer));
+                break;
+            case TYPE_DOUBLE_OBJECT:
+                value = buffer.getDouble();
+                break;
+            default:
+                value = null;
+        }
+
+        int tagCount = buffer.getShort() & 0xffff;
+        Map<String, String> tags = new HashMap<String, String>(tagCount * 2);
+        for (int i = 0; i < tagCount; i++) {
+            tags.put(readString(buffer), readString(buffer));
+        }
+
+        SeriesKey seriesKey = SeriesKey.of(name, tags);
+        Metric metric;
+        if (type == TYPE_LONG) {
+            metric = new Metric(seriesKey, longValue);
+        } else if (type == TYPE_DOUBLE) {
+            metric = new Metric(seriesKey, doubleValue);
+        } else {
+            metric = new Metric(seriesKey, value);
+        }
+        metric.setTimestamp(timestamp);
+        metric.setGranularity(readNullableString(buffer));
+        if (buffer.get() != 0) {
+            metric.setVersion(buffer.getLong());
+        }
+        return metric;
+    }
+
+    private static void writeString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void writeNullableString(ByteBuffer buffer, String s) {
+        if (s == null) {
+            buffer.putInt(-1);
+        } else {
+            writeString(buffer, s);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static String readNullableString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,417 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 由最多maxSegments个内存映射的段文件组成的追加写日志，保存溢出的数据点。
+ * 段文件在第一次需要时创建并映射，之后一直保持映射、循环复用，close()时解除映射。
+ * <p>
+ * 段文件头部为 [long 代数][int 已确认位置]，代数为0表示空闲段；之后每条记录为 [int 长度][数据]，
+ * 长度为0表示段内没有更多数据，-1表示写入方已切换到下一个段。
+ * 每次drainTo读出的记录由一个Receipt确认，Receipt按读出的顺序推进已确认位置，
+ * 段内的记录全部确认之后段才回到空闲池。启动时按代数顺序从已确认位置开始回放上次遗留的段，
+ * 读出但没有确认的记录会被再次回放。
+ */
+class SpillLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillLog.class);
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".seg";
+    private static final int END_OF_SEGMENT = -1;
+    private static final long FREE = 0;
+    private static final int GENERATION_OFFSET = 0;
+    private static final int COMMITTED_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final SpillCodec codec = new SpillCodec();
+    // 还有未读或未确认记录的段，按代数从旧到新排列，最后一个是当前写入段
+    private final ArrayDeque<Segment> active = new ArrayDeque<Segment>();
+    private final ArrayDeque<Segment> free = new ArrayDeque<Segment>();
+    // 按读出顺序排列的未确认的Receipt
+    private final ArrayDeque<Receipt> pending = new ArrayDeque<Receipt>();
+    private int segmentCount;
+    private int nextIndex;
+    private long nextGeneration = FREE + 1;
+    private int count;
+    private boolean closed;
+
+    SpillLog(File directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create spill directory " + directory);
+        }
+        recover();
+    }
+
+    /**
+     * @return 所有段都有未确认的记录、没有空间时返回false
+     */
+    synchronized boolean append(Metric metric) throws IOException {
+        if (closed) {
+            throw new IOException("The spill log has been closed");
+        }
+        ByteBuffer record = codec.encode(metric);
+        int length = record.remaining();
+        if (HEADER_SIZE + 4 + length + 4 > segmentSize) {
+            throw new IOException("The metric is too large to spill: " + length + " bytes");
+        }
+
+        Segment segment = active.peekLast();
+        if (segment == null || !segment.writable || segment.writePosition + 4 + length + 4 > segmentSize) {
+            // 写满的段已经全部确认时直接复用，只有一个段时也不会卡住
+            if (segment != null && segment.committedPosition == segment.writePosition) {
+                active.removeLast();
+                recycle(segment);
+                segment = null;
+            }
+            Segment next = allocate();
+            if (next == null) {
+                return false;
+            }
+            if (segment != null && segment.writable) {
+                segment.buffer.putInt(segment.writePosition, END_OF_SEGMENT);
+                segment.writable = false;
+            }
+            active.addLast(next);
+            segment = next;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        buffer.position(position + 4);
+        buffer.put(record);
+        // 复用的段中还有旧数据，先写结束标记再写长度
+        buffer.putInt(position + 4 + length, 0);
+        buffer.putInt(position, length);
+        segment.writePosition = position + 4 + length;
+        count++;
+        return true;
+    }
+
+    /**
+     * 最后一个读出的数据点带有这一批的Acknowledgement
+     */
+    synchronized int drainTo(List<Metric> metrics, int max) {
+        if (closed) {
+            return 0;
+        }
+        int drained = 0;
+        Segment last = null;
+        Metric lastMetric = null;
+        for (Segment segment : active) {
+            while (drained < max && segment.readPosition < segment.writePosition) {
+                MappedByteBuffer buffer = segment.buffer;
+                int length = buffer.getInt(segment.readPosition);
+                ByteBuffer record = buffer.duplicate();
+                record.position(segment.readPosition + 4);
+                record.limit(segment.readPosition + 4 + length);
+                segment.readPosition += 4 + length;
+                count--;
+                last = segment;
+                try {
+                    lastMetric = codec.decode(record);
+                    metrics.add(lastMetric);
+                    drained++;
+                } catch (RuntimeException e) {
+                    LOGGER.error("Skip a corrupted spilled record in {}", segment.file, e);
+                }
+            }
+            // 达到max，或者当前写入段已经读完
+            if (segment.readPosition < segment.writePosition || segment.writable) {
+                break;
+            }
+        }
+
+        if (last != null) {
+            Receipt receipt = new Receipt(last, last.readPosition);
+            pending.addLast(receipt);
+            if (lastMetric != null) {
+                lastMetric.setAcknowledgement(receipt);
+            } else {
+                // 只读到了损坏的记录
+                acknowledge(receipt);
+            }
+        }
+        return drained;
+    }
+
+    private synchronized void acknowledge(Receipt receipt) {
+        if (closed || receipt.acknowledged) {
+            return;
+        }
+        receipt.acknowledged = true;
+        Receipt head;
+        while ((head = pending.peekFirst()) != null && head.acknowledged) {
+            pending.removeFirst();
+            commit(head.segment, head.position);
+        }
+    }
+
+    private void commit(Segment segment, int position) {
+        // 之前的段都已经读完，其中的记录由这一个或者更早的Receipt确认
+        Segment oldest;
+        while ((oldest = active.peekFirst()) != null && oldest != segment) {
+            active.removeFirst();
+            recycle(oldest);
+        }
+        segment.buffer.putInt(COMMITTED_OFFSET, position);
+        segment.committedPosition = position;
+        if (!segment.writable && position == segment.writePosition) {
+            active.removeFirst();
+            recycle(segment);
+        }
+    }
+
+    private Segment allocate() throws IOException {
+        Segment segment = free.pollFirst();
+        if (segment == null) {
+            if (segmentCount >= maxSegments) {
+                return null;
+            }
+            segment = createSegment(nextIndex++);
+            segmentCount++;
+        }
+        segment.reset(nextGeneration++);
+        return segment;
+    }
+
+    private void recycle(Segment segment) {
+        segment.buffer.putLong(GENERATION_OFFSET, FREE);
+        // 上次运行时配置的段数或者段大小不同，多出的段文件不再保留
+        if (segmentCount > maxSegments || segment.buffer.capacity() != segmentSize) {
+            segmentCount--;
+            unmap(segment.buffer);
+            segment.delete();
+            return;
+        }
+        free.addLast(segment);
+    }
+
+    /**
+     * 未读的记录数
+     */
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 是否还有读出但没有确认的记录
+     */
+    synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * 刷盘并解除映射，之后的确认不再生效，未确认的记录在下次启动时回放
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : active) {
+            segment.buffer.force();
+            unmap(segment.buffer);
+        }
+        for (Segment segment : free) {
+            segment.buffer.force();
+            unmap(segment.buffer);
+        }
+        active.clear();
+        free.clear();
+        pending.clear();
+    }
+
+    private Segment createSegment(int index) throws IOException {
+        File file = new File(directory, PREFIX + index + SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(segmentSize);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(file, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        List<Segment> recovered = new ArrayList<Segment>();
+        for (File file : files) {
+            String name = file.getName();
+            int index;
+            try {
+                index = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Ignore unknown file {} in the spill directory", file);
+                continue;
+            }
+            nextIndex = Math.max(nextIndex, index + 1);
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            MappedByteBuffer buffer;
+            try {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            } finally {
+                raf.close();
+            }
+            Segment segment = new Segment(file, buffer);
+            segmentCount++;
+            int size = buffer.capacity();
+            long generation = size >= HEADER_SIZE ? buffer.getLong(GENERATION_OFFSET) : FREE;
+            if (generation == FREE) {
+                recycle(segment);
+                continue;
+            }
+
+            int committed = buffer.getInt(COMMITTED_OFFSET);
+            if (committed < HEADER_SIZE || committed > size) {
+                committed = HEADER_SIZE;
+            }
+            int position = committed;
+            while (position + 4 <= size) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + 4 + length > size) {
+                    break;
+                }
+                position += 4 + length;
+                count++;
+            }
+            segment.generation = generation;
+            segment.readPosition = committed;
+            segment.committedPosition = committed;
+            segment.writePosition = position;
+            segment.writable = false;
+            recovered.add(segment);
+        }
+
+        Collections.sort(recovered, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment o1, Segment o2) {
+                return Long.compare(o1.generation, o2.generation);
+            }
+        });
+        for (Segment segment : recovered) {
+            nextGeneration = Math.max(nextGeneration, segment.generation + 1);
+            if (segment.readPosition == segment.writePosition) {
+                recycle(segment);
+            } else {
+                active.addLast(segment);
+            }
+        }
+        if (count > 0) {
+            LOGGER.info("Recovered {} spilled points from {}", count, directory);
+        }
+    }
+
+    /**
+     * 映射在GC回收之前不会释放，JDK 9以上用Unsafe.invokeCleaner，JDK 8用DirectBuffer.cleaner()主动解除映射
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            LOGGER.debug("Can not unmap the spill segment, it will be released by GC", e);
+        }
+    }
+
+    private static class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private long generation;
+        private int writePosition;
+        private int readPosition;
+        private int committedPosition;
+        private boolean writable;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 作为新的写入段使用
+         */
+        void reset(long generation) {
+            this.generation = generation;
+            this.writePosition = HEADER_SIZE;
+            this.readPosition = HEADER_SIZE;
+            this.committedPosition = HEADER_SIZE;
+            this.writable = true;
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.putInt(COMMITTED_OFFSET, HEADER_SIZE);
+            buffer.putLong(GENERATION_OFFSET, generation);
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                LOGGER.warn("Can not delete spill segment {}", file);
+            }
+        }
+    }
+
+    private class Receipt implements Acknowledgement {
+        private final Segment segment;
+        private final int position;
+        private boolean acknowledged;
+
+        Receipt(Segment segment, int position) {
+            this.segment = segment;
+            this.position = position;
+        }
+
+        @Override
+        public void acknowledge() {
+            SpillLog.this.acknowledge(this);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在内存队列外面加一层磁盘溢出。内存队列超过高水位后，新数据写入内存映射的段文件，
+ * 直到磁盘上的数据全部被读出，保证数据按写入顺序被消费。
+ * 内存队列中的数据总是早于磁盘上的数据，因此消费者先取内存队列，为空时再从磁盘回放。
+ * <p>
+ * 从磁盘读出的一批数据点中最后一个带有Acknowledgement，发送完成后确认，磁盘空间在确认之后才复用。
+ * 磁盘上还有未读数据而段已经用完时，不再写入内存队列（会打乱顺序），按backpressure阻塞等待或抛出BufferQueueFullException。
+ */
+public class SpillQueue implements DataQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillQueue.class);
+    private final DataQueue memoryQueue;
+    private final SpillLog spillLog;
+    private final int highWaterMark;
+    private final boolean backpressure;
+    private final WaitStrategy waitStrategy;
+    private final int waitCloseTimeLimit;
+    private final AtomicBoolean forbiddenWrite = new AtomicBoolean(false);
+    // 磁盘上还有未读的数据时为true，此时新数据也必须写入磁盘
+    private volatile boolean spilling;
+
+    public SpillQueue(DataQueue memoryQueue, File directory, int highWaterMark, int segmentSize, int maxSegments,
+                      boolean backpressure, WaitStrategy waitStrategy, int waitCloseTimeLimit) throws IOException {
+        this.memoryQueue = memoryQueue;
+        this.spillLog = new SpillLog(directory, segmentSize, maxSegments);
+        this.highWaterMark = highWaterMark;
+        this.backpressure = backpressure;
+        this.waitStrategy = waitStrategy;
+        this.waitCloseTimeLimit = waitCloseTimeLimit;
+        this.spilling = !spillLog.isEmpty();
+    }
+
+    @Override
+    public void send(Metric metric) {
+        if (forbiddenWrite.get()) {
+            throw new IllegalStateException("client has been closed.");
+        }
+
+        int attempts = 0;
+        while (spilling || memoryQueue.size() >= highWaterMark) {
+            if (spill(metric)) {
+                return;
+            }
+            // 磁盘上没有未读数据时写入内存队列不会打乱顺序
+            if (!spilling) {
+                break;
+            }
+            if (!backpressure) {
+                throw new BufferQueueFullException("The buffer queue and the spill log are full.");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.error("Client Thread been Interrupted.");
+                return;
+            }
+            waitStrategy.idle(attempts++);
+        }
+        memoryQueue.send(metric);
+    }
+
+    private boolean spill(Metric metric) {
+        try {
+            synchronized (spillLog) {
+                if (spillLog.append(metric)) {
+                    spilling = true;
+                    metric.release();
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("An error occurred while spilling the metric to disk", e);
+        }
+        return false;
+    }
+
+    @Override
+    public Metric receive() throws InterruptedException {
+        int attempts = 0;
+        while (true) {
+            Metric metric = poll();
+            if (metric != null) {
+                return metric;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempts++);
+        }
+    }
+
+    @Override
+    public Metric receive(int timeout) throws InterruptedException {
+        Metric metric = poll();
+        if (metric != null) {
+            return metric;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle(attempts++);
+            metric = poll();
+            if (metric != null) {
+                return metric;
+            }
+        }
+    }
+
+    /**
+     * 内存队列中的数据更早，先取内存队列
+     */
+    private Metric poll() throws InterruptedException {
+        Metric metric = memoryQueue.receive(0);
+        if (metric != null || !spilling) {
+            return metric;
+        }
+        List<Metric> metrics = new ArrayList<Metric>(1);
+        drainSpilled(metrics, 1);
+        return metrics.isEmpty() ? null : metrics.get(0);
+    }
+
+    @Override
+    public int drainTo(List<Metric> metrics, int max, long timeout) throws InterruptedException {
+        if (!spilling) {
+            return memoryQueue.drainTo(metrics, max, timeout);
+        }
+
+        int count = memoryQueue.drainTo(metrics, max, 0);
+        if (count < max) {
+            count += drainSpilled(metrics, max - count);
+        }
+        return count;
+    }
+
+    private int drainSpilled(List<Metric> metrics, int max) {
+        synchronized (spillLog) {
+            int count = spillLog.drainTo(metrics, max);
+            if (spillLog.isEmpty()) {
+                spilling = false;
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void forbiddenSend() {
+        forbiddenWrite.compareAndSet(false, true);
+        memoryQueue.forbiddenSend();
+    }
+
+    /**
+     * 还要等待从磁盘读出的数据点全部确认，之后关闭溢出日志
+     */
+    @Override
+    public void waitEmpty() {
+        // 等待为空之前，必须已经设置了禁止写入
+        if (!forbiddenWrite.get()) {
+            throw new IllegalStateException(
+                    "The queue is still allowed to write data. you must first call the forbiddenSend() method");
+        }
+
+        while (!isEmpty() || spillLog.hasPending()) {
+            try {
+                Thread.sleep(waitCloseTimeLimit);
+            } catch (InterruptedException e) {
+                LOGGER.warn("The waitEmpty() method is being illegally interrupted");
+            }
+        }
+        spillLog.close();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return memoryQueue.isEmpty() && spillLog.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return memoryQueue.size() + spillLog.size();
+    }
+}
@@ -0,0 +1,12 @@
+package com.mici.monitor.queue;
+
+/**
+ * RingBufferQueue在队列满（背压）或队列空（消费者）时的等待策略。
+ */
+public interface WaitStrategy {
+
+    /**
+     * @param attempts 本次等待已经重试的次数，从0开始
+     */
+    void idle(int attempts);
+}
@@ -0,0 +1,15 @@
+package com.mici.monitor.queue;
+
+/**
+ * 先自旋一定次数，之后每次等待让出CPU。
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void idle(int attempts) {
+        if (attempts >= SPIN_TRIES) {
+            Thread.yield();
+        }
+    }
+}
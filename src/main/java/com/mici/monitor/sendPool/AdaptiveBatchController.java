@@ -0,0 +1,103 @@
+package com.mici.monitor.sendPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据队列积压、请求往返时间和请求体大小在上下限之间调整批次大小和等待时间：
+ * <ul>
+ * <li>批次攒满或队列积压超过一个批次时，批次大小翻倍，不再等待，尽量提高吞吐；</li>
+ * <li>批次不足一半时，批次大小减少1/4，等待时间取请求往返时间，等待的代价不超过一次请求本身，空闲时延迟很低；</li>
+ * <li>批次大小不超过maxPayloadSize / 每个数据点的平均字节数。</li>
+ * </ul>
+ * 往返时间和每个数据点的字节数使用指数加权平均。
+ */
+public class AdaptiveBatchController implements BatchController {
+    private static final double ALPHA = 0.2;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int minLingerTime;
+    private final int maxLingerTime;
+    private final int maxPayloadSize;
+
+    private volatile int batchSize;
+    private volatile int lingerTime;
+    private volatile long roundTripNanos;
+    private volatile double bytesPerPoint;
+
+    public AdaptiveBatchController(int minBatchSize, int maxBatchSize, int minLingerTime, int maxLingerTime,
+                                   int maxPayloadSize, int initialBatchSize, int initialLingerTime) {
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.minLingerTime = minLingerTime;
+        this.maxLingerTime = maxLingerTime;
+        this.maxPayloadSize = maxPayloadSize;
+        this.batchSize = clamp(initialBatchSize, minBatchSize, maxBatchSize);
+        this.lingerTime = clamp(initialLingerTime, minLingerTime, maxLingerTime);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getLingerTime() {
+        return lingerTime;
+    }
+
+    /**
+     * 请求往返时间的加权平均，单位：毫秒
+     */
+    public double getRoundTripTime() {
+        return roundTripNanos / 1000000.0;
+    }
+
+    /**
+     * 每个数据点序列化后的平均字节数
+     */
+    public double getBytesPerPoint() {
+        return bytesPerPoint;
+    }
+
+    @Override
+    public synchronized void onBatch(int points, int bytes, int queueDepth) {
+        if (points > 0 && bytes > 0) {
+            double perPoint = (double) bytes / points;
+            bytesPerPoint = bytesPerPoint == 0 ? perPoint : bytesPerPoint + ALPHA * (perPoint - bytesPerPoint);
+        }
+
+        long size = batchSize;
+        if (points >= size || queueDepth >= size) {
+            // 有积压，增大批次，数据足够多不需要等待
+            size = size * 2;
+            lingerTime = minLingerTime;
+        } else {
+            if (points < size / 2) {
+                size = size - size / 4;
+            }
+            lingerTime = clamp(TimeUnit.NANOSECONDS.toMillis(roundTripNanos), minLingerTime, maxLingerTime);
+        }
+
+        if (bytesPerPoint > 0) {
+            size = Math.min(size, (long) (maxPayloadSize / bytesPerPoint));
+        }
+        batchSize = clamp(size, minBatchSize, maxBatchSize);
+    }
+
+    @Override
+    public synchronized void onRoundTrip(long nanos) {
+        long rtt = roundTripNanos;
+        roundTripNanos = rtt == 0 ? nanos : rtt + (long) (ALPHA * (nanos - rtt));
+    }
+
+    private static int clamp(long value, int min, int max) {
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBatchController{batchSize=" + batchSize + ", lingerTime=" + lingerTime
+                + ", roundTripTime=" + getRoundTripTime() + ", bytesPerPoint=" + bytesPerPoint + '}';
+    }
+}
@@ -0,0 +1,74 @@
+package com.mici.monitor.sendPool;
+
+import com.mici.monitor.http.HttpURL;
+import com.mici.monitor.queue.Acknowledgement;
+import com.mici.monitor.serialize.Payload;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次写入请求的数据，持有序列化好的Payload，请求结束后由BatchSender释放。
+ */
+public class Batch {
+    private final Payload payload;
+    private final int pointCount;
+    private final String apiPath;
+    // 批次中从磁盘回放的数据点的确认
+    private final List<Acknowledgement> acknowledgements;
+    private int attempts;
+
+    public Batch(Payload payload, int pointCount) {
+        this(payload, pointCount, HttpURL.PUT);
+    }
+
+    public Batch(Payload payload, int pointCount, String apiPath) {
+        this(payload, pointCount, apiPath, Collections.<Acknowledgement>emptyList());
+    }
+
+    public Batch(Payload payload, int pointCount, String apiPath, List<Acknowledgement> acknowledgements) {
+        this.payload = payload;
+        this.pointCount = pointCount;
+        this.apiPath = apiPath;
+        this.acknowledgements = acknowledgements;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+
+    /**
+     * JSON格式发送到HttpURL.PUT，二进制格式发送到配置的binaryPutPath
+     */
+    public String getApiPath() {
+        return apiPath;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * 已经发送的次数，同一时刻只有一个线程在发送同一个Batch
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    void incrementAttempts() {
+        attempts++;
+    }
+
+    /**
+     * 发送成功或者最终放弃之后由BatchSender调用，重试期间不调用
+     */
+    public void acknowledge() {
+        for (Acknowledgement acknowledgement : acknowledgements) {
+            acknowledgement.acknowledge();
+        }
+    }
+
+    public void release() {
+        payload.release();
+    }
+}
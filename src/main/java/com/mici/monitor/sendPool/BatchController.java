@@ -0,0 +1,31 @@
+package com.mici.monitor.sendPool;
+
+/**
+ * 决定消费者线程每个批次攒多少数据点、最多等待多久。同一个节点的消费者线程和发送回调共享一个实例。
+ */
+public interface BatchController {
+
+    /**
+     * 每个批次最多的数据点数
+     */
+    int getBatchSize();
+
+    /**
+     * 拿到第一个数据点后最多等待的时间，单位：毫秒
+     */
+    int getLingerTime();
+
+    /**
+     * 一个批次序列化完成后调用
+     *
+     * @param points     批次中的数据点数
+     * @param bytes      请求体字节数
+     * @param queueDepth 取出批次后队列中剩余的数据点数
+     */
+    void onBatch(int points, int bytes, int queueDepth);
+
+    /**
+     * 一次请求结束后调用，包括失败的请求
+     */
+    void onRoundTrip(long nanos);
+}
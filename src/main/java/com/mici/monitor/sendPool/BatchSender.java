@@ -0,0 +1,279 @@
+package com.mici.monitor.sendPool;
+
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.http.Endpoint;
+import com.mici.monitor.http.HttpClient;
+import com.mici.monitor.stats.ClientStats;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.AsynchronousCloseException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 负责把Batch发送到一个节点。putRequestLimitSwitch打开时，用信号量限制发往该节点同时在途的请求数为putRequestLimit；
+ * asyncSend打开时请求通过回调完成，消费者线程不等待响应，可以连续发出多个请求。
+ * executionMode为VIRTUAL时每个批次在一个新的虚拟线程中同步发送，消费者线程不等待响应。
+ * IO错误、5xx和429失败的批次在batchPutRetryCount次数内交给RetryScheduler重试。
+ */
+public class BatchSender {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchSender.class);
+    private final HttpClient httpclient;
+    private final Endpoint endpoint;
+    private final BatchController batchController;
+    private final Semaphore semaphore;
+    private final boolean asyncSend;
+    // VIRTUAL模式下每个批次一个虚拟线程，PLATFORM模式为null
+    private final ExecutorService batchExecutor;
+    private final int retryCount;
+    private final RetryScheduler retryScheduler;
+    private final ClientStats stats;
+
+    public BatchSender(HttpClient httpclient, Endpoint endpoint, BatchController batchController, MonitorConfig config, ClientStats stats) {
+        this.httpclient = httpclient;
+        this.endpoint = endpoint;
+        this.batchController = batchController;
+        this.stats = stats;
+        this.asyncSend = config.isAsyncSend();
+        this.batchExecutor = createBatchExecutor(config, endpoint);
+        if (config.isPutRequestLimitSwitch() && config.getPutRequestLimit() > 0) {
+            this.semaphore = new Semaphore(config.getPutRequestLimit());
+        } else {
+            this.semaphore = null;
+        }
+        this.retryCount = config.getBatchPutRetryCount();
+        if (this.retryCount > 0) {
+            this.retryScheduler = new RetryScheduler(config.getBatchPutRetryBufferSize(),
+                    config.getBatchPutRetryBackoff(), config.getBatchPutRetryMaxBackoff(), stats);
+        } else {
+            this.retryScheduler = null;
+        }
+    }
+
+    private static ExecutorService createBatchExecutor(MonitorConfig config, Endpoint endpoint) {
+        if (config.getExecutionMode() != ExecutionMode.VIRTUAL) {
+            return null;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("Batch-Put-" + endpoint + "-");
+        if (executor == null) {
+            LOGGER.warn("Virtual threads are not available on Java {}, fall back to the platform execution mode",
+                    System.getProperty("java.version"));
+        } else if (config.isAsyncSend()) {
+            LOGGER.warn("The asyncSend is ignored in the virtual execution mode");
+        }
+        return executor;
+    }
+
+    public void send(final Batch batch) {
+        if (semaphore != null) {
+            // 在途请求达到上限时阻塞消费者，请求结束后一定会释放，因此不响应中断，避免关闭时丢掉手里的数据
+            semaphore.acquireUninterruptibly();
+        }
+        execute(batch);
+    }
+
+    /**
+     * 在重试线程中执行，拿不到发送许可时不等待，重新排队。
+     */
+    private void retry(final Batch batch) {
+        if (semaphore != null && !semaphore.tryAcquire()) {
+            if (!retryScheduler.reschedule(batch, retryTask(batch))) {
+                drop(batch, "retry aborted");
+            }
+            return;
+        }
+        execute(batch);
+    }
+
+    private void execute(final Batch batch) {
+        batch.incrementAttempts();
+        if (batchExecutor != null) {
+            try {
+                batchExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendSync(batch);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                // 关闭之后的重试在当前线程发送
+            }
+            sendSync(batch);
+        } else if (asyncSend) {
+            sendAsync(batch);
+        } else {
+            sendSync(batch);
+        }
+    }
+
+    private void sendSync(Batch batch) {
+        HttpResponse response;
+        long start = System.nanoTime();
+        try {
+            response = httpclient.post(endpoint, batch.getApiPath(), batch.getPayload());
+        } catch (Exception ex) {
+            complete(start);
+            onFailure(batch, ex);
+            return;
+        }
+        complete(start);
+        onResponse(batch, response);
+    }
+
+    private void sendAsync(final Batch batch) {
+        final long start = System.nanoTime();
+        try {
+            httpclient.postAsync(endpoint, batch.getApiPath(), batch.getPayload(), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    complete(start);
+                    onResponse(batch, response);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    complete(start);
+                    onFailure(batch, ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    complete(start);
+                    drop(batch, "request cancelled");
+                }
+            });
+        } catch (Exception ex) {
+            releasePermit();
+            onFailure(batch, ex);
+        }
+    }
+
+    private void onResponse(Batch batch, HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode >= 200 && statusCode < 300) {
+            stats.onSent(batch.getPointCount());
+            batch.acknowledge();
+            batch.release();
+            return;
+        }
+
+        // 4xx 表示数据本身有问题，重试也不会成功；429 和 5xx 可以重试
+        if (statusCode >= 500 || statusCode == 429) {
+            retryOrDrop(batch, "status = " + statusCode, null);
+        } else {
+            drop(batch, "status = " + statusCode);
+        }
+    }
+
+    private void onFailure(Batch batch, Exception ex) {
+        if (isRetryable(ex)) {
+            retryOrDrop(batch, ex.getMessage(), ex);
+        } else {
+            drop(batch, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 只有真实的IO错误可以重试（超时也算）。中断、取消和客户端关闭引起的错误不重试，
+     * 这时请求可能已经到达服务端，重发会重复写入
+     */
+    static boolean isRetryable(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof CancellationException
+                    || cause instanceof AsynchronousCloseException || cause.getClass() == InterruptedIOException.class) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void retryOrDrop(Batch batch, String reason, Exception ex) {
+        if (retryScheduler != null && batch.getAttempts() <= retryCount) {
+            if (retryScheduler.schedule(batch, retryTask(batch))) {
+                stats.onRetry();
+                LOGGER.warn("send metric to {} error, {}, retry {}/{}", endpoint, reason, batch.getAttempts(), retryCount);
+                return;
+            }
+            reason = reason + ", retry buffer is full";
+        }
+
+        if (ex != null) {
+            drop(batch, reason, ex);
+        } else {
+            drop(batch, reason);
+        }
+    }
+
+    private void drop(Batch batch, String reason, Exception ex) {
+        LOGGER.error("send metric to {} error, {}, {} points are dropped", endpoint, reason, batch.getPointCount(), ex);
+        stats.onDropped(batch.getPointCount());
+        batch.acknowledge();
+        batch.release();
+    }
+
+    private void drop(Batch batch, String reason) {
+        LOGGER.error("send metric to {} error, {}, {} points are dropped", endpoint, reason, batch.getPointCount());
+        stats.onDropped(batch.getPointCount());
+        // 已经计入丢弃的数据点也要确认，否则溢出日志的空间不会被复用
+        batch.acknowledge();
+        batch.release();
+    }
+
+    private Runnable retryTask(final Batch batch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                retry(batch);
+            }
+        };
+    }
+
+    private void complete(long start) {
+        releasePermit();
+        batchController.onRoundTrip(System.nanoTime() - start);
+    }
+
+    private void releasePermit() {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    public void close() {
+        this.close(false);
+    }
+
+    public void close(boolean force) {
+        if (batchExecutor != null) {
+            // 等待在途的批次，它们失败后可能还会进入重试队列
+            if (force) {
+                batchExecutor.shutdownNow();
+            } else {
+                batchExecutor.shutdown();
+                try {
+                    batchExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    LOGGER.warn("The thread {} is Interrupted", Thread.currentThread().getName());
+                }
+            }
+        }
+        if (retryScheduler != null) {
+            retryScheduler.stop(force);
+        }
+    }
+}
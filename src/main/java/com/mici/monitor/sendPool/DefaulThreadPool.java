@@ -3,29 +3,45 @@ package com.mici.monitor.sendPool;
 import com.google.common.util.concurrent.RateLimiter;
 import com.mici.monitor.Metric;
 import com.mici.monitor.MonitorConfig;
-import com.mici.monitor.client.Monitor;
+import com.mici.monitor.http.Endpoint;
 import com.mici.monitor.http.HttpClient;
 import com.mici.monitor.queue.DataQueue;
+import com.mici.monitor.stats.ClientStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DefaulThreadPool {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaulThreadPool.class);
     private DataQueue dataQueue;
     private ExecutorService threadPool;
     private int batchPutConsumerThreadCount;
-    private HttpClient httpclient;
+    private BatchSender batchSender;
+    private final BatchController batchController;
+    private final ClientStats stats;
     private MonitorConfig config;
     private RateLimiter rateLimiter;
     private CountDownLatch countDownLatch;
+    // 为true后消费者取不到数据时退出，正在发送的批次不受影响
+    private final AtomicBoolean stopping = new AtomicBoolean(false);
 
     public DefaulThreadPool(DataQueue buffer, HttpClient httpclient, RateLimiter rateLimiter, MonitorConfig config) {
+        this(buffer, httpclient, config.getEndpoints().get(0), rateLimiter, config, new ClientStats());
+    }
+
+    /**
+     * 消费buffer中的数据点，发送到endpoint
+     */
+    public DefaulThreadPool(DataQueue buffer, HttpClient httpclient, Endpoint endpoint, RateLimiter rateLimiter, MonitorConfig config, ClientStats stats) {
         this.dataQueue = buffer;
-        this.httpclient = httpclient;
+        this.stats = stats;
+        this.batchController = createBatchController(config);
+        this.batchSender = new BatchSender(httpclient, endpoint, this.batchController, config, stats);
         this.config = config;
         this.countDownLatch = new CountDownLatch(config.getBatchPutConsumerThreadCount());
         this.batchPutConsumerThreadCount = config.getBatchPutConsumerThreadCount();
@@ -33,12 +49,25 @@ public class DefaulThreadPool {
         threadPool = Executors.newFixedThreadPool(batchPutConsumerThreadCount);
     }
 
+    private static BatchController createBatchController(MonitorConfig config) {
+        if (config.isAdaptiveBatch()) {
+            return new AdaptiveBatchController(config.getAdaptiveBatchMinSize(), config.getAdaptiveBatchMaxSize(),
+                    config.getAdaptiveBatchMinTimeLimit(), config.getAdaptiveBatchMaxTimeLimit(),
+                    config.getAdaptiveBatchMaxPayloadSize(), config.getBatchPutSize(), config.getBatchPutTimeLimit());
+        }
+        return new FixedBatchController(config.getBatchPutSize(), config.getBatchPutTimeLimit());
+    }
+
     public void start() {
         for (int i = 0; i < batchPutConsumerThreadCount; i++) {
-            threadPool.submit(new SendRannable(this.dataQueue, this.httpclient, this.config,this.countDownLatch,this.rateLimiter));
+            threadPool.submit(new SendRannable(this.dataQueue, this.batchSender, this.batchController, this.config,this.countDownLatch,this.rateLimiter,this.stats,this.stopping));
         }
     }
 
+    public BatchController getBatchController() {
+        return batchController;
+    }
+
     public void stop() {
         this.stop(false);
     }
@@ -48,18 +77,22 @@ public class DefaulThreadPool {
             if (force) {
                 // 强制退出不等待，截断消费者线程。
                 threadPool.shutdownNow();
+                batchSender.close(true);
             } else {
-                // 截断消费者线程。
-                while(!threadPool.isShutdown() || !threadPool.isTerminated()){
-                    threadPool.shutdownNow();
-                }
+                // 通知消费者在队列取空后退出，不中断线程，避免打断在途的请求
+                stopping.set(true);
+                threadPool.shutdown();
 
                 // 等待所有消费者线程结束。
                 try {
+                    threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
                     countDownLatch.await();
                 } catch (InterruptedException e) {
                     LOGGER.error("An error occurred waiting for the consumer thread to close", e);
                 }
+
+                // 等待重试队列中的批次发送完成。
+                batchSender.close();
             }
         }
 
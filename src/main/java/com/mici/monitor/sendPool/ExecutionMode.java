@@ -0,0 +1,16 @@
+package com.mici.monitor.sendPool;
+
+/**
+ * 发送请求的执行方式
+ */
+public enum ExecutionMode {
+    /**
+     * 消费者线程自己发送请求（asyncSend时通过回调完成）
+     */
+    PLATFORM,
+    /**
+     * 每个在途批次一个虚拟线程，在虚拟线程中同步发送，消费者线程继续攒下一个批次。
+     * 需要JDK 21及以上，以及multi-release jar，不满足时退回PLATFORM。
+     */
+    VIRTUAL
+}
@@ -0,0 +1,32 @@
+package com.mici.monitor.sendPool;
+
+/**
+ * 使用固定的batchPutSize和batchPutTimeLimit
+ */
+public class FixedBatchController implements BatchController {
+    private final int batchSize;
+    private final int lingerTime;
+
+    public FixedBatchController(int batchSize, int lingerTime) {
+        this.batchSize = batchSize;
+        this.lingerTime = lingerTime;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getLingerTime() {
+        return lingerTime;
+    }
+
+    @Override
+    public void onBatch(int points, int bytes, int queueDepth) {
+    }
+
+    @Override
+    public void onRoundTrip(long nanos) {
+    }
+}
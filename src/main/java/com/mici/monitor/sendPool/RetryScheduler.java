@@ -0,0 +1,158 @@
+package com.mici.monitor.sendPool;
+
+import com.mici.monitor.stats.ClientStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 失败批次的重试队列。重试由单独的定时线程按指数退避加随机抖动触发，消费者线程不会因为重试而阻塞。
+ * 同时等待重试的批次数不超过retryBufferSize，超出的批次直接丢弃。
+ */
+public class RetryScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryScheduler.class);
+    private final ScheduledExecutorService scheduler;
+    private final int retryBufferSize;
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final AtomicInteger pending = new AtomicInteger(0);
+    // 等待执行的重试，强制关闭时丢弃
+    private final Set<RetryTask> tasks = Collections.newSetFromMap(new ConcurrentHashMap<RetryTask, Boolean>());
+    private final ClientStats stats;
+
+    public RetryScheduler(int retryBufferSize, long baseBackoff, long maxBackoff, ClientStats stats) {
+        this.stats = stats;
+        this.retryBufferSize = retryBufferSize;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Batch-Put-Retry");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * 按batch已经失败的次数计算退避时间，放入重试队列。
+     *
+     * @return 重试队列已满或已关闭时返回false，由调用方丢弃该批次
+     */
+    public boolean schedule(Batch batch, Runnable retry) {
+        if (pending.incrementAndGet() > retryBufferSize) {
+            pending.decrementAndGet();
+            return false;
+        }
+        if (!submit(new RetryTask(batch, retry), backoff(batch.getAttempts()))) {
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 重试时拿不到发送许可，稍后再试，不计入重试次数，也不重新占用重试队列的位置。
+     */
+    public boolean reschedule(Batch batch, Runnable retry) {
+        pending.incrementAndGet();
+        if (!submit(new RetryTask(batch, retry), baseBackoff)) {
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean submit(RetryTask task, long delay) {
+        tasks.add(task);
+        try {
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            tasks.remove(task);
+            return false;
+        }
+    }
+
+    long backoff(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        long delay = Math.min(maxBackoff, baseBackoff << shift);
+        // 等值抖动：在[delay/2, delay]之间随机，避免多个客户端同时重试
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public void stop() {
+        this.stop(false);
+    }
+
+    public void stop(boolean force) {
+        if (force) {
+            // shutdownNow返回的是包装后的ScheduledFuture，未执行的重试从tasks中取
+            scheduler.shutdownNow();
+            for (RetryTask task : tasks) {
+                task.drop();
+            }
+            return;
+        }
+
+        // 已经排队的重试在shutdown之后仍然会执行，最多等待一个最大退避时间
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(maxBackoff * 2, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("{} batches are still waiting for retry when closing", pending.get());
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("The thread {} is Interrupted", Thread.currentThread().getName());
+        }
+    }
+
+    private class RetryTask implements Runnable {
+        private final Batch batch;
+        private final Runnable retry;
+
+        RetryTask(Batch batch, Runnable retry) {
+            this.batch = batch;
+            this.retry = retry;
+        }
+
+        @Override
+        public void run() {
+            if (!tasks.remove(this)) {
+                return;
+            }
+            pending.decrementAndGet();
+            try {
+                retry.run();
+            } catch (Exception ex) {
+                LOGGER.error("An error occurred while retrying the batch", ex);
+            }
+        }
+
+        void drop() {
+            if (!tasks.remove(this)) {
+                return;
+            }
+            pending.decrementAndGet();
+            LOGGER.error("send metric retry aborted, {} points are dropped", batch.getPointCount());
+            stats.onDropped(batch.getPointCount());
+            batch.acknowledge();
+            batch.release();
+        }
+    }
+}
@@ -1,21 +1,25 @@
 package com.mici.monitor.sendPool;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.google.common.util.concurrent.RateLimiter;
 import com.mici.monitor.Metric;
 import com.mici.monitor.MonitorConfig;
-import com.mici.monitor.http.HttpClient;
 import com.mici.monitor.http.HttpURL;
+import com.mici.monitor.queue.Acknowledgement;
 import com.mici.monitor.queue.DataQueue;
+import com.mici.monitor.serialize.BinaryMetricEncoder;
+import com.mici.monitor.serialize.MetricEncoder;
+import com.mici.monitor.serialize.Payload;
+import com.mici.monitor.serialize.PayloadCompressor;
+import com.mici.monitor.stats.ClientStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SendRannable implements Runnable {
    private static final Logger logger = LoggerFactory.getLogger(SendRannable.class);
@@ -26,126 +30,155 @@ public class SendRannable implements Runnable {
     private final DataQueue dataQueue;
 
     /**
-     * Http客户端
+     * 请求发送
      */
-    private final HttpClient hitsdbHttpClient;
+    private final BatchSender batchSender;
 
     private final MonitorConfig monitorConfig;
 
+    /**
+     * 批次大小和等待时间
+     */
+    private final BatchController batchController;
+
     private final CountDownLatch countDownLatch;
 
-    private int batchSize;
+    private final ClientStats stats;
+
+    /**
+     * 优雅关闭的信号，设置之后队列取空时退出
+     */
+    private final AtomicBoolean stopping;
 
     private int batchPutTimeLimit;
 
-    public SendRannable(DataQueue dataQueue, HttpClient httpclient, MonitorConfig config, CountDownLatch countDownLatch, RateLimiter rateLimiter) {
+    public SendRannable(DataQueue dataQueue, BatchSender batchSender, BatchController batchController, MonitorConfig config, CountDownLatch countDownLatch, RateLimiter rateLimiter, ClientStats stats, AtomicBoolean stopping) {
         this.dataQueue = dataQueue;
-        this.hitsdbHttpClient = httpclient;
+        this.batchSender = batchSender;
+        this.batchController = batchController;
         this.monitorConfig = config;
         this.countDownLatch = countDownLatch;
-        this.batchSize = config.getBatchPutSize();
+        this.stats = stats;
+        this.stopping = stopping;
         this.batchPutTimeLimit = config.getBatchPutTimeLimit();
     }
 
     @Override
     public void run() {
-        // 线程变量sb，paramsMap，waitPoint，readyClose 每个线程只有一组这样的变量。
-        StringBuilder sb = new StringBuilder();
-
-        Map<String, String> paramsMap = new HashMap<String, String>();
+        // 线程变量encoder，compressor，pointList，readyClose 每个线程只有一组这样的变量。
+        MetricEncoder encoder = new MetricEncoder();
+        String binaryPutPath = monitorConfig.getBinaryPutPath();
+        BinaryMetricEncoder binaryEncoder = binaryPutPath == null ? null : new BinaryMetricEncoder();
+        PayloadCompressor compressor = null;
+        if (monitorConfig.isHttpCompress()) {
+            compressor = new PayloadCompressor(monitorConfig.getHttpCompressLevel(),
+                    monitorConfig.getHttpCompressStrategy(), monitorConfig.getHttpCompressThreshold());
+        }
 
-        Metric waitPoint = null;
+        List<Metric> pointList = new ArrayList<Metric>(batchController.getBatchSize());
         boolean readyClose = false;
-        int waitTimeLimit = batchPutTimeLimit/3;
-        long batchPutTimeLimitNano = batchPutTimeLimit*1000l;
 
-        while (true) {
-            if(readyClose && waitPoint == null) {
-                break ;
-            }
-
-            long t0 = System.nanoTime();  // nano
-            List<Metric> pointList = new ArrayList<Metric>(batchSize);
-            if (waitPoint != null) {
-                pointList.add(waitPoint);
-                waitPoint = null;
-            }
-
-            for (int i = pointList.size(); i < batchSize; i++) {
-                try {
-                    Metric point = dataQueue.receive(waitTimeLimit);
-                    if (point != null) {
-                        pointList.add(point);
-                    }
+        while (!readyClose) {
+            pointList.clear();
+            int batchSize = batchController.getBatchSize();
+            try {
+                // 队列为空时等待第一个点，拿到之后才开始计算攒批时间
+                if (dataQueue.drainTo(pointList, batchSize, batchPutTimeLimit) == 0) {
+                    readyClose = stopping.get();
+                    continue;
+                }
 
-                    long t1 = System.nanoTime();  // nano
-                    if(t1-t0 > batchPutTimeLimitNano) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchController.getLingerTime());
+                while (pointList.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
                         break;
                     }
-                		/*
-	                	Point point = dataQueue.receive(this.batchPutTimeLimit);
-	                if(point == null) {
-	                		break;
-	                }
-	                pointList.add(point);
-	                long t1 = System.nanoTime();  // nano
-	                if(t1-t0 > batchPutTimeLimitNano) {
-	                    break;
-	                }
-                		*/
-                } catch (InterruptedException e) {
-                    readyClose = true;
-                    logger.info("The thread {} is interrupted", Thread.currentThread().getName());
-                    break;
-                }
-            }
-
-            if (pointList.size() == 0 && !readyClose) {
-                try {
-                    Metric newPoint = dataQueue.receive();
-                    waitPoint = newPoint;
-                    continue ;
-                } catch (InterruptedException e) {
-                    readyClose = true;
-                    logger.info("The thread {} is interrupted", Thread.currentThread().getName());
+                    // 向上取整到毫秒，避免剩余不足1ms时变成不等待的空转
+                    long timeout = (remaining + 999999L) / 1000000L;
+                    dataQueue.drainTo(pointList, batchSize - pointList.size(), timeout);
                 }
+            } catch (InterruptedException e) {
+                readyClose = true;
+                logger.info("The thread {} is interrupted", Thread.currentThread().getName());
             }
 
             if(pointList.size() == 0) {
                 continue;
             }
 
-            // 序列化
-            String strJson = serialize(pointList, sb);
+            // 序列化，Payload随请求一起在途，由BatchSender在请求结束后释放
+            Payload payload = new Payload();
+            // 有非数值或带version的数据点时整批使用JSON
+            boolean binary = binaryEncoder != null && BinaryMetricEncoder.supports(pointList);
+            boolean serialized = binary
+                    ? serialize(pointList, binaryEncoder, compressor, payload)
+                    : serialize(pointList, encoder, compressor, payload);
+            int pointCount = pointList.size();
+            // 序列化之后不再需要Metric，来自MetricPool的对象归还到池中
+            List<Acknowledgement> acknowledgements = Collections.emptyList();
+            for (int i = 0; i < pointCount; i++) {
+                Metric metric = pointList.get(i);
+                if (metric.getAcknowledgement() != null) {
+                    if (acknowledgements.isEmpty()) {
+                        acknowledgements = new ArrayList<Acknowledgement>(2);
+                    }
+                    acknowledgements.add(metric.getAcknowledgement());
+                }
+                metric.release();
+            }
+            if (!serialized) {
+                stats.onDropped(pointCount);
+                for (Acknowledgement acknowledgement : acknowledgements) {
+                    acknowledgement.acknowledge();
+                }
+                continue;
+            }
+            stats.onBatch(pointCount);
+            batchController.onBatch(pointCount, payload.size(), dataQueue.size());
 
             // 发送
-            sendHttpRequest(pointList,strJson,paramsMap);
+            batchSender.send(new Batch(payload, pointCount, binary ? binaryPutPath : HttpURL.PUT, acknowledgements));
         }
 
-        if (readyClose) {
-            this.countDownLatch.countDown();
-            return ;
+        if (compressor != null) {
+            compressor.end();
         }
+        this.countDownLatch.countDown();
     }
 
-    private void sendHttpRequest(List<Metric> pointList,String strJson,Map<String,String> paramsMap) {
-        String address = getAddressAndSemaphoreAcquire();
-
-        // 发送
-
+    private boolean serialize(List<Metric> metricList, BinaryMetricEncoder encoder, PayloadCompressor compressor, Payload payload) {
         try {
-            hitsdbHttpClient.post(address+HttpURL.PUT, strJson);
+            payload.setContentType(BinaryMetricEncoder.CONTENT_TYPE);
+            if (compressor == null) {
+                encoder.encode(metricList, payload);
+            } else {
+                compressor.begin(payload);
+                encoder.encode(metricList, compressor);
+                compressor.finish();
+            }
+            return true;
         } catch (Exception ex) {
-            logger.error("send metric error json = {}",strJson);
+            payload.release();
+            logger.error("serialize metric error, {} points are dropped", metricList.size(), ex);
+            return false;
         }
     }
 
-    private String getAddressAndSemaphoreAcquire() {
-
-        return monitorConfig.getHost() + ":" + monitorConfig.getPort();
-    }
-
-    private String serialize(List<Metric> metricList, StringBuilder sb) {
-        return JSON.toJSONString(metricList, SerializerFeature.DisableCircularReferenceDetect);
+    private boolean serialize(List<Metric> metricList, MetricEncoder encoder, PayloadCompressor compressor, Payload payload) {
+        try {
+            if (compressor == null) {
+                encoder.encode(metricList, payload);
+            } else {
+                compressor.begin(payload);
+                encoder.encode(metricList, compressor);
+                compressor.finish();
+            }
+            return true;
+        } catch (Exception ex) {
+            payload.release();
+            logger.error("serialize metric error, {} points are dropped", metricList.size(), ex);
+            return false;
+        }
     }
 }
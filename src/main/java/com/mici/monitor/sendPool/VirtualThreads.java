@@ -0,0 +1,17 @@
+package com.mici.monitor.sendPool;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 创建每个任务一个虚拟线程的Executor。JDK 21以下没有虚拟线程，返回null；
+ * JDK 21及以上从multi-release jar中加载 META-INF/versions/21 下的实现。
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        return null;
+    }
+}
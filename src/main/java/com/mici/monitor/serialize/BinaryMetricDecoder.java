@@ -0,0 +1,167 @@
+package com.mici.monitor.serialize;
+
+import com.mici.monitor.Metric;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BinaryMetricEncoder格式的参考解码器，用于测试和服务端对接，格式说明见BinaryMetricEncoder。
+ * 返回的数据点按组的顺序排列，非线程安全。
+ */
+public class BinaryMetricDecoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final InputStream in;
+    private int bitBuffer;
+    private int bitCount;
+
+    private BinaryMetricDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    public static List<Metric> decode(InputStream in) throws IOException {
+        return new BinaryMetricDecoder(in).decode();
+    }
+
+    private List<Metric> decode() throws IOException {
+        if (readByte() != 'M' || readByte() != 'S') {
+            throw new IOException("Not a binary metric payload");
+        }
+        int version = readByte();
+        if (version != BinaryMetricEncoder.VERSION) {
+            throw new IOException("Unsupported binary metric version " + version);
+        }
+
+        int groupCount = readVarint();
+        List<Metric> metrics = new ArrayList<Metric>();
+        for (int i = 0; i < groupCount; i++) {
+            readGroup(metrics);
+        }
+        return metrics;
+    }
+
+    private void readGroup(List<Metric> metrics) throws IOException {
+        String name = readString();
+        int tagCount = readVarint();
+        Map<String, String> tags = new LinkedHashMap<String, String>();
+        for (int i = 0; i < tagCount; i++) {
+            String key = readString();
+            tags.put(key, readString());
+        }
+        String granularity = readString();
+        if (granularity.isEmpty()) {
+            granularity = null;
+        }
+        boolean isDouble = readByte() == BinaryMetricEncoder.DOUBLE_VALUES;
+        int count = readVarint();
+
+        long timestamp = readBits(64);
+        long value = readBits(64);
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        metrics.add(metric(name, tags, granularity, isDouble, timestamp, value));
+        for (int i = 1; i < count; i++) {
+            delta += readVariableBits();
+            timestamp += delta;
+
+            if (!isDouble) {
+                value += readVariableBits();
+            } else if (readBits(1) == 1) {
+                if (readBits(1) == 1) {
+                    leading = (int) readBits(5);
+                    int significant = (int) readBits(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                value ^= readBits(64 - leading - trailing) << trailing;
+            }
+            metrics.add(metric(name, tags, granularity, isDouble, timestamp, value));
+        }
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+
+    private static Metric metric(String name, Map<String, String> tags, String granularity, boolean isDouble,
+                                 long timestamp, long value) {
+        Metric metric = isDouble
+                ? new Metric(name, Double.longBitsToDouble(value), tags)
+                : new Metric(name, value, tags);
+        metric.setTimestamp(timestamp);
+        metric.setGranularity(granularity);
+        return metric;
+    }
+
+    private long readVariableBits() throws IOException {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(7), 7);
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(9), 9);
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(12), 12);
+        }
+        if (readBits(1) == 0) {
+            return signed(readBits(32), 32);
+        }
+        return readBits(64);
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private long readBits(int count) throws IOException {
+        long value = 0;
+        while (count > 0) {
+            if (bitCount == 0) {
+                bitBuffer = readByte();
+                bitCount = 8;
+            }
+            int take = Math.min(bitCount, count);
+            int chunk = (bitBuffer >>> (bitCount - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitCount -= take;
+            count -= take;
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarint()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) readByte();
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
@@ -0,0 +1,274 @@
+package com.mici.monitor.serialize;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.ValueType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的二进制批次格式编码器，同一批次中的数据点按时间线分组，每组只写一次 name + tags：
+ * <pre>
+ * payload = 'M' 'S' version(1) varint(组数) group*
+ * group   = string(name) varint(tag数) (string(key) string(value))* string(granularity，没有时为空串)
+ *           byte(0 整数 / 1 浮点数) varint(点数) bits(按字节补齐)
+ * string  = varint(UTF-8字节数) UTF-8字节
+ * </pre>
+ * bits部分按高位在前的比特流依次写入每个点的时间戳和值：
+ * <ul>
+ * <li>第一个点的时间戳和值各写64位；</li>
+ * <li>之后的时间戳写delta-of-delta，整数的值写与上一个值的差，都用 0 / 10+7位 / 110+9位 / 1110+12位 / 11110+32位 / 11111+64位 的变长编码；</li>
+ * <li>浮点数的值按Gorilla的方式写与上一个值的XOR：0 表示相同，10 表示有效位落在上一次的前导零和尾随零之内，
+ * 11 后面写5位前导零个数、6位有效位数减1和有效位。</li>
+ * </ul>
+ * 同一时间线的整数和浮点数、不同granularity的数据点分在不同的组。不支持字符串等非数值的值和version，
+ * 调用方先用supports()判断，不支持时使用JSON格式。内部持有可复用的缓冲区，非线程安全，每个消费者线程使用一个实例。
+ */
+public class BinaryMetricEncoder {
+    public static final String CONTENT_TYPE = "application/x-monitor-series";
+    static final int VERSION = 1;
+    static final int LONG_VALUES = 0;
+    static final int DOUBLE_VALUES = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<SeriesKey, Group> groups = new HashMap<SeriesKey, Group>();
+    private final List<Group> order = new ArrayList<Group>();
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private OutputStream out;
+    // 还没凑满一个字节的比特
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * 批次中的数据点都可以用二进制格式编码时返回true
+     */
+    public static boolean supports(List<Metric> metrics) {
+        for (int i = 0; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            if (metric.getValueType() == ValueType.OBJECT || metric.getVersion() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void encode(List<Metric> metrics, OutputStream out) throws IOException {
+        this.out = out;
+        this.position = 0;
+        try {
+            group(metrics);
+            writeByte('M');
+            writeByte('S');
+            writeByte(VERSION);
+            writeVarint(order.size());
+            for (int i = 0; i < order.size(); i++) {
+                writeGroup(order.get(i));
+            }
+            flushBuffer();
+        } finally {
+            groups.clear();
+            order.clear();
+            bitBuffer = 0;
+            bitCount = 0;
+            this.out = null;
+        }
+    }
+
+    private void group(List<Metric> metrics) {
+        for (int i = 0; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            if (metric.getValueType() == ValueType.OBJECT) {
+                throw new IllegalArgumentException("The binary format only supports numeric values, metric: " + metric.getName());
+            }
+            boolean isDouble = metric.getValueType() == ValueType.DOUBLE;
+            String granularity = metric.getGranularity();
+
+            SeriesKey key = metric.toSeriesKey();
+            Group head = groups.get(key);
+            Group group = head;
+            while (group != null && !group.matches(isDouble, granularity)) {
+                group = group.next;
+            }
+            if (group == null) {
+                group = new Group(key, isDouble, granularity);
+                if (head == null) {
+                    groups.put(key, group);
+                } else {
+                    group.next = head.next;
+                    head.next = group;
+                }
+                order.add(group);
+            }
+            group.metrics.add(metric);
+        }
+    }
+
+    private void writeGroup(Group group) throws IOException {
+        writeString(group.seriesKey.getName());
+        Map<String, String> tags = group.seriesKey.getTags();
+        writeVarint(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            writeString(tag.getKey());
+            writeString(tag.getValue());
+        }
+        writeString(group.granularity == null ? "" : group.granularity);
+        writeByte(group.isDouble ? DOUBLE_VALUES : LONG_VALUES);
+
+        List<Metric> metrics = group.metrics;
+        writeVarint(metrics.size());
+
+        Metric first = metrics.get(0);
+        long previousTimestamp = first.getTimestamp();
+        long previousDelta = 0;
+        long previousValue = group.isDouble ? Double.doubleToRawLongBits(first.getDoubleValue()) : first.getLongValue();
+        writeBits(previousTimestamp, 64);
+        writeBits(previousValue, 64);
+
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            long delta = metric.getTimestamp() - previousTimestamp;
+            writeVariableBits(delta - previousDelta);
+            previousTimestamp = metric.getTimestamp();
+            previousDelta = delta;
+
+            if (!group.isDouble) {
+                long value = metric.getLongValue();
+                writeVariableBits(value - previousValue);
+                previousValue = value;
+                continue;
+            }
+
+            long value = Double.doubleToRawLongBits(metric.getDoubleValue());
+            long xor = value ^ previousValue;
+            previousValue = value;
+            if (xor == 0) {
+                writeBits(0, 1);
+                continue;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                writeBits(2, 2);
+                writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                writeBits(3, 2);
+                writeBits(leading, 5);
+                writeBits(significant - 1, 6);
+                writeBits(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        alignBits();
+    }
+
+    /**
+     * 0 / 10+7位 / 110+9位 / 1110+12位 / 11110+32位 / 11111+64位，按补码保存
+     */
+    private void writeVariableBits(long value) throws IOException {
+        if (value == 0) {
+            writeBits(0, 1);
+        } else if (value >= -64 && value <= 63) {
+            writeBits(2, 2);
+            writeBits(value, 7);
+        } else if (value >= -256 && value <= 255) {
+            writeBits(6, 3);
+            writeBits(value, 9);
+        } else if (value >= -2048 && value <= 2047) {
+            writeBits(14, 4);
+            writeBits(value, 12);
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            writeBits(30, 5);
+            writeBits(value, 32);
+        } else {
+            writeBits(31, 5);
+            writeBits(value, 64);
+        }
+    }
+
+    /**
+     * 写入value的低count位，高位在前
+     */
+    private void writeBits(long value, int count) throws IOException {
+        while (count > 0) {
+            int take = Math.min(8 - bitCount, count);
+            int chunk = (int) (value >>> (count - take)) & ((1 << take) - 1);
+            bitBuffer = (bitBuffer << take) | chunk;
+            bitCount += take;
+            count -= take;
+            if (bitCount == 8) {
+                writeByte(bitBuffer);
+                bitBuffer = 0;
+                bitCount = 0;
+            }
+        }
+    }
+
+    private void alignBits() throws IOException {
+        if (bitCount > 0) {
+            writeByte(bitBuffer << (8 - bitCount));
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        writeVarint(bytes.length);
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static class Group {
+        private final SeriesKey seriesKey;
+        private final boolean isDouble;
+        private final String granularity;
+        private final List<Metric> metrics = new ArrayList<Metric>();
+        // 同一时间线的其他值类型或granularity
+        private Group next;
+
+        Group(SeriesKey seriesKey, boolean isDouble, String granularity) {
+            this.seriesKey = seriesKey;
+            this.isDouble = isDouble;
+            this.granularity = granularity;
+        }
+
+        boolean matches(boolean isDouble, String granularity) {
+            return this.isDouble == isDouble
+                    && (this.granularity == null ? granularity == null : this.granularity.equals(granularity));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.mici.monitor.serialize;
+
+import com.mici.monitor.queue.RingBuffer;
+
+/**
+ * 固定大小byte[]块的共享池，序列化时从池中借块，请求发送完成后归还，稳定状态下不再分配新的缓冲区。
+ */
+public class BufferPool {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    public static final int DEFAULT_MAX_POOLED_CHUNKS = 512;
+
+    private static final BufferPool DEFAULT = new BufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS);
+
+    private final int chunkSize;
+    private final RingBuffer<byte[]> chunks;
+
+    public BufferPool(int chunkSize, int maxPooledChunks) {
+        this.chunkSize = chunkSize;
+        this.chunks = new RingBuffer<byte[]>(maxPooledChunks);
+    }
+
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    public byte[] acquire() {
+        byte[] chunk = chunks.poll();
+        if (chunk == null) {
+            chunk = new byte[chunkSize];
+        }
+        return chunk;
+    }
+
+    /**
+     * 池满时直接丢弃，交给GC回收
+     */
+    public void release(byte[] chunk) {
+        if (chunk != null && chunk.length == chunkSize) {
+            chunks.offer(chunk);
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -0,0 +1,283 @@
+package com.mici.monitor.serialize;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 手写的OpenTSDB /api/put 格式编码器，直接把UTF-8字节写入输出流，不经过String和反射。
+ * 内部持有可复用的缓冲区，非线程安全，每个消费者线程使用一个实例。
+ */
+public class MetricEncoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] METRIC_FIELD = ascii("{\"metric\":");
+    private static final byte[] TIMESTAMP_FIELD = ascii(",\"timestamp\":");
+    private static final byte[] VALUE_FIELD = ascii(",\"value\":");
+    private static final byte[] TAGS_FIELD = ascii(",\"tags\":{");
+    private static final byte[] TAGS_END = ascii("}");
+    private static final byte[] GRANULARITY_FIELD = ascii(",\"granularity\":");
+    private static final byte[] VERSION_FIELD = ascii(",\"version\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] MIN_LONG = ascii(String.valueOf(Long.MIN_VALUE));
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final byte[] buffer = new byte[8192];
+    private final byte[] digits = new byte[20];
+    private final StringBuilder numberBuilder = new StringBuilder(32);
+    private int position;
+    private OutputStream out;
+
+    public void encode(List<Metric> metrics, OutputStream out) throws IOException {
+        this.out = out;
+        this.position = 0;
+        try {
+            writeByte('[');
+            for (int i = 0; i < metrics.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeMetric(metrics.get(i));
+            }
+            writeByte(']');
+            flushBuffer();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    /**
+     * 生成SeriesKey使用的 {"metric":"name","tags":{...} 前缀
+     */
+    public static byte[] encodeSeriesPrefix(String name, Map<String, String> tags) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        MetricEncoder encoder = new MetricEncoder();
+        encoder.out = out;
+        try {
+            encoder.writeSeriesPrefix(name, tags);
+            encoder.flushBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeMetric(Metric metric) throws IOException {
+        SeriesKey seriesKey = metric.getSeriesKey();
+        if (seriesKey != null && seriesKey.hasEncodedPrefix()) {
+            writeRaw(seriesKey.getEncodedPrefix());
+        } else {
+            writeSeriesPrefix(metric.getName(), metric.getTags());
+        }
+        writeRaw(TIMESTAMP_FIELD);
+        writeLong(metric.getTimestamp());
+        writeRaw(VALUE_FIELD);
+        switch (metric.getValueType()) {
+            case LONG:
+                writeLong(metric.getLongValue());
+                break;
+            case DOUBLE:
+                writeDouble(metric.getDoubleValue());
+                break;
+            default:
+                writeValue(metric.getValue());
+        }
+        if (metric.getGranularity() != null) {
+            writeRaw(GRANULARITY_FIELD);
+            writeString(metric.getGranularity());
+        }
+        if (metric.getVersion() != null) {
+            writeRaw(VERSION_FIELD);
+            writeLong(metric.getVersion());
+        }
+        writeByte('}');
+    }
+
+    private void writeSeriesPrefix(String name, Map<String, String> tags) throws IOException {
+        writeRaw(METRIC_FIELD);
+        writeString(name);
+        writeRaw(TAGS_FIELD);
+        boolean first = true;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!first) {
+                writeByte(',');
+            }
+            first = false;
+            writeString(tag.getKey());
+            writeByte(':');
+            writeString(tag.getValue());
+        }
+        writeRaw(TAGS_END);
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            writeAscii(value.toString());
+        } else if (value instanceof Number) {
+            // Integer、AtomicLong等按数值输出，和溢出到磁盘后读回的数据点一致
+            Number number = (Number) value;
+            if (isIntegral(number)) {
+                writeLong(number.longValue());
+            } else {
+                writeDouble(number.doubleValue());
+            }
+        } else if (value instanceof Boolean) {
+            writeRaw((Boolean) value ? TRUE : FALSE);
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * longValue()不会丢失精度的Number类型
+     */
+    public static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short
+                || number instanceof Byte || number instanceof AtomicLong || number instanceof AtomicInteger;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(MIN_LONG);
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        writeRaw(digits, i, digits.length - i);
+    }
+
+    private void writeDouble(double value) throws IOException {
+        // JSON不支持NaN和Infinity
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeRaw(NULL);
+            return;
+        }
+        numberBuilder.setLength(0);
+        numberBuilder.append(value);
+        writeAscii(numberBuilder);
+    }
+
+    private void writeAscii(CharSequence cs) throws IOException {
+        for (int i = 0; i < cs.length(); i++) {
+            writeByte(cs.charAt(i));
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    writeByte(c);
+                } else {
+                    writeEscaped(c);
+                }
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符，与String.getBytes(UTF-8)一致替换为'?'
+                writeByte('?');
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        writeByte('\\');
+        switch (c) {
+            case '"':
+                writeByte('"');
+                break;
+            case '\\':
+                writeByte('\\');
+                break;
+            case '\n':
+                writeByte('n');
+                break;
+            case '\r':
+                writeByte('r');
+                break;
+            case '\t':
+                writeByte('t');
+                break;
+            case '\b':
+                writeByte('b');
+                break;
+            case '\f':
+                writeByte('f');
+                break;
+            default:
+                writeByte('u');
+                writeByte('0');
+                writeByte('0');
+                writeByte(HEX[(c >> 4) & 0xf]);
+                writeByte(HEX[c & 0xf]);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        writeRaw(bytes, 0, bytes.length);
+    }
+
+    private void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(UTF_8);
+    }
+}
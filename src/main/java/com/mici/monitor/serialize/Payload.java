@@ -0,0 +1,134 @@
+package com.mici.monitor.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由BufferPool中的块拼接而成的请求体，序列化结果直接写入这里，发送时按块读出，不做整体拷贝。
+ * 使用完毕后必须调用release()把块归还到池中。
+ */
+public class Payload extends OutputStream {
+    private final BufferPool pool;
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private byte[] current;
+    private int position;
+    private int size;
+    private String contentEncoding;
+    private String contentType;
+
+    public Payload() {
+        this(BufferPool.getDefault());
+    }
+
+    public Payload(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int b) {
+        if (current == null || position == current.length) {
+            nextChunk();
+        }
+        current[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (current == null || position == current.length) {
+                nextChunk();
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(b, off, current, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    private void nextChunk() {
+        current = pool.acquire();
+        position = 0;
+        chunks.add(current);
+    }
+
+    /**
+     * 内容已经被压缩时为对应的编码，例如gzip，否则为null
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * 为null时是JSON
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public byte[] getChunk(int index) {
+        return chunks.get(index);
+    }
+
+    /**
+     * 第index块中有效数据的长度
+     */
+    public int getChunkLength(int index) {
+        if (index == chunks.size() - 1) {
+            return position;
+        }
+        return chunks.get(index).length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        for (int i = 0; i < chunks.size(); i++) {
+            out.write(chunks.get(i), 0, getChunkLength(i));
+        }
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size];
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = getChunkLength(i);
+            System.arraycopy(chunks.get(i), 0, bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+
+    /**
+     * 清空内容并归还所有块，之后可以继续写入。
+     */
+    public void release() {
+        for (int i = 0; i < chunks.size(); i++) {
+            pool.release(chunks.get(i));
+        }
+        chunks.clear();
+        current = null;
+        position = 0;
+        size = 0;
+        contentEncoding = null;
+        contentType = null;
+    }
+}
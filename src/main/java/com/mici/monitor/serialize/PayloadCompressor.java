@@ -0,0 +1,126 @@
+package com.mici.monitor.serialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 边序列化边压缩的gzip输出流，压缩结果写入Payload。
+ * 数据量不超过threshold时不压缩，超过后把已缓存的数据和后续数据一起压缩。
+ * Deflater和缓冲区在实例内复用，非线程安全，每个消费者线程使用一个实例，线程退出时调用end()释放本地内存。
+ */
+public class PayloadCompressor extends OutputStream {
+    public static final String GZIP = "gzip";
+
+    private static final byte[] GZIP_HEADER = {
+            (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] staging;
+    private final byte[] deflateBuffer = new byte[8192];
+    private Payload target;
+    private int stagingSize;
+    private boolean compressing;
+    private long totalIn;
+
+    public PayloadCompressor(int level, int strategy, int threshold) {
+        this.deflater = new Deflater(level, true);
+        this.deflater.setStrategy(strategy);
+        this.staging = new byte[Math.max(threshold, 0)];
+    }
+
+    public void begin(Payload target) {
+        this.target = target;
+        this.stagingSize = 0;
+        this.compressing = false;
+        this.totalIn = 0;
+        target.setContentEncoding(null);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!compressing) {
+            if (stagingSize + len <= staging.length) {
+                System.arraycopy(b, off, staging, stagingSize, len);
+                stagingSize += len;
+                return;
+            }
+            startCompress();
+        }
+        deflate(b, off, len);
+    }
+
+    /**
+     * 结束本次写入，返回的Payload已带上对应的Content-Encoding
+     */
+    public Payload finish() throws IOException {
+        Payload payload = target;
+        try {
+            if (!compressing) {
+                payload.write(staging, 0, stagingSize);
+                return payload;
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                drainDeflater();
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) totalIn);
+            return payload;
+        } finally {
+            target = null;
+            deflater.reset();
+        }
+    }
+
+    /**
+     * 释放Deflater占用的本地内存，之后不能再使用
+     */
+    public void end() {
+        deflater.end();
+    }
+
+    private void startCompress() throws IOException {
+        compressing = true;
+        deflater.reset();
+        crc.reset();
+        target.setContentEncoding(GZIP);
+        target.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        if (stagingSize > 0) {
+            deflate(staging, 0, stagingSize);
+            stagingSize = 0;
+        }
+    }
+
+    private void deflate(byte[] b, int off, int len) {
+        crc.update(b, off, len);
+        totalIn += len;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            drainDeflater();
+        }
+    }
+
+    private void drainDeflater() {
+        int n = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+        if (n > 0) {
+            target.write(deflateBuffer, 0, n);
+        }
+    }
+
+    private void writeIntLE(int v) {
+        target.write(v & 0xff);
+        target.write((v >> 8) & 0xff);
+        target.write((v >> 16) & 0xff);
+        target.write((v >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,56 @@
+package com.mici.monitor.shard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环，每个节点在环上放置virtualNodes个虚拟节点，使数据在节点间分布均匀，
+ * 增减节点时只有相邻区间的数据改变归属。环在创建后不可变，可以被多个线程并发查询。
+ */
+public class ConsistentHashRing<T> {
+    private final TreeMap<Long, T> ring = new TreeMap<Long, T>();
+    private final T single;
+
+    /**
+     * @param nodes 节点，使用toString()计算在环上的位置，节点的toString()必须互不相同
+     */
+    public ConsistentHashRing(List<T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("The nodes con't be empty");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("The virtualNodes con't be less then 1");
+        }
+        for (T node : nodes) {
+            long seed = (long) node.toString().hashCode() << 32;
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(mix(seed | i), node);
+            }
+        }
+        this.single = nodes.size() == 1 ? nodes.get(0) : null;
+    }
+
+    public T get(int hash) {
+        if (single != null) {
+            return single;
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(mix(hash));
+        if (entry == null) {
+            entry = ring.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * MurmurHash3 的 fmix64，把相近的输入打散到整个环上
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mici.monitor.shard;
+
+import com.mici.monitor.http.Endpoint;
+import com.mici.monitor.queue.DataQueue;
+import com.mici.monitor.sendPool.DefaulThreadPool;
+
+/**
+ * 一个后端节点的写入通道：独立的缓冲队列和消费者线程，慢节点只会堆积自己的队列。
+ */
+public class Shard {
+    private final Endpoint endpoint;
+    private final DataQueue queue;
+    private final DefaulThreadPool threadPool;
+
+    public Shard(Endpoint endpoint, DataQueue queue, DefaulThreadPool threadPool) {
+        this.endpoint = endpoint;
+        this.queue = queue;
+        this.threadPool = threadPool;
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public DataQueue getQueue() {
+        return queue;
+    }
+
+    public DefaulThreadPool getThreadPool() {
+        return threadPool;
+    }
+
+    @Override
+    public String toString() {
+        return endpoint.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.mici.monitor.stats;
+
+import com.mici.monitor.queue.DataQueue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端写入链路的内部统计，一个Sender一份。所有计数从创建开始累加，只增不减，
+ * 使用LongAdder，多个线程同时更新时没有竞争。
+ */
+public class ClientStats {
+    private final LongAdder pointsEnqueued = new LongAdder();
+    private final LongAdder pointsDropped = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchPoints = new LongAdder();
+    private final LongAdder pointsSent = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder httpRequests = new LongAdder();
+    private final LongAdder httpFailures = new LongAdder();
+    private final LongAdder httpLatencyNanos = new LongAdder();
+    private final List<DataQueue> queues = new CopyOnWriteArrayList<DataQueue>();
+
+    public void addQueue(DataQueue queue) {
+        queues.add(queue);
+    }
+
+    public void onEnqueued() {
+        pointsEnqueued.increment();
+    }
+
+    public void onQueueFull() {
+        queueFull.increment();
+        pointsDropped.increment();
+    }
+
+    public void onDropped(int points) {
+        pointsDropped.add(points);
+    }
+
+    public void onBatch(int points) {
+        batches.increment();
+        batchPoints.add(points);
+    }
+
+    public void onSent(int points) {
+        pointsSent.add(points);
+    }
+
+    public void onRetry() {
+        retries.increment();
+    }
+
+    /**
+     * 一次HTTP请求结束
+     *
+     * @param failed 请求异常或者响应码不是2xx
+     */
+    public void onHttpRequest(long latencyNanos, boolean failed) {
+        httpRequests.increment();
+        httpLatencyNanos.add(latencyNanos);
+        if (failed) {
+            httpFailures.increment();
+        }
+    }
+
+    /**
+     * 写入缓冲队列的数据点数
+     */
+    public long getPointsEnqueued() {
+        return pointsEnqueued.sum();
+    }
+
+    /**
+     * 丢弃的数据点数，包括队列满、序列化失败、发送失败且不再重试
+     */
+    public long getPointsDropped() {
+        return pointsDropped.sum();
+    }
+
+    /**
+     * 关闭背压时队列满抛出BufferQueueFullException的次数
+     */
+    public long getQueueFull() {
+        return queueFull.sum();
+    }
+
+    /**
+     * 消费者线程攒出的批次数
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * 所有批次的数据点数之和，除以getBatches()是平均批次大小
+     */
+    public long getBatchPoints() {
+        return batchPoints.sum();
+    }
+
+    /**
+     * 后端确认写入成功的数据点数
+     */
+    public long getPointsSent() {
+        return pointsSent.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getHttpRequests() {
+        return httpRequests.sum();
+    }
+
+    public long getHttpFailures() {
+        return httpFailures.sum();
+    }
+
+    /**
+     * 所有HTTP请求的耗时之和，单位：纳秒，除以getHttpRequests()是平均耗时
+     */
+    public long getHttpLatencyNanos() {
+        return httpLatencyNanos.sum();
+    }
+
+    /**
+     * 当前所有缓冲队列中的数据点数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (DataQueue queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientStats{pointsEnqueued=" + getPointsEnqueued() + ", pointsDropped=" + getPointsDropped()
+                + ", queueFull=" + getQueueFull() + ", queueDepth=" + getQueueDepth()
+                + ", batches=" + getBatches() + ", batchPoints=" + getBatchPoints()
+                + ", pointsSent=" + getPointsSent() + ", retries=" + getRetries()
+                + ", httpRequests=" + getHttpRequests() + ", httpFailures=" + getHttpFailures()
+                + ", httpLatencyNanos=" + getHttpLatencyNanos() + '}';
+    }
+}
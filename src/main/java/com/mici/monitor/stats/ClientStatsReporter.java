@@ -0,0 +1,88 @@
+package com.mici.monitor.stats;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.aggregate.Aggregator;
+import com.mici.monitor.client.Sender;
+
+/**
+ * 把ClientStats通过同一个Sender上报到PREFIX开头的指标。计数上报两次flush之间的增量，
+ * 另外上报当前队列深度、周期内的平均批次大小和平均请求耗时（毫秒）。
+ */
+public class ClientStatsReporter implements Aggregator {
+    public static final String PREFIX = "monitor.client.";
+
+    private static final SeriesKey POINTS_ENQUEUED = SeriesKey.of(PREFIX + "points.enqueued");
+    private static final SeriesKey POINTS_DROPPED = SeriesKey.of(PREFIX + "points.dropped");
+    private static final SeriesKey POINTS_SENT = SeriesKey.of(PREFIX + "points.sent");
+    private static final SeriesKey QUEUE_FULL = SeriesKey.of(PREFIX + "queue.full");
+    private static final SeriesKey QUEUE_DEPTH = SeriesKey.of(PREFIX + "queue.depth");
+    private static final SeriesKey BATCHES = SeriesKey.of(PREFIX + "batches");
+    private static final SeriesKey BATCH_SIZE = SeriesKey.of(PREFIX + "batch.size");
+    private static final SeriesKey RETRIES = SeriesKey.of(PREFIX + "retries");
+    private static final SeriesKey HTTP_REQUESTS = SeriesKey.of(PREFIX + "http.requests");
+    private static final SeriesKey HTTP_FAILURES = SeriesKey.of(PREFIX + "http.failures");
+    private static final SeriesKey HTTP_LATENCY = SeriesKey.of(PREFIX + "http.latency");
+
+    private final ClientStats stats;
+
+    // 上一次flush时的累计值，只在flush线程使用
+    private long pointsEnqueued;
+    private long pointsDropped;
+    private long pointsSent;
+    private long queueFull;
+    private long batches;
+    private long batchPoints;
+    private long retries;
+    private long httpRequests;
+    private long httpFailures;
+    private long httpLatencyNanos;
+
+    public ClientStatsReporter(ClientStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void flush(Sender sender) {
+        long currentPointsEnqueued = stats.getPointsEnqueued();
+        long currentPointsDropped = stats.getPointsDropped();
+        long currentPointsSent = stats.getPointsSent();
+        long currentQueueFull = stats.getQueueFull();
+        long currentBatches = stats.getBatches();
+        long currentBatchPoints = stats.getBatchPoints();
+        long currentRetries = stats.getRetries();
+        long currentHttpRequests = stats.getHttpRequests();
+        long currentHttpFailures = stats.getHttpFailures();
+        long currentHttpLatencyNanos = stats.getHttpLatencyNanos();
+
+        long batchDelta = currentBatches - batches;
+        long requestDelta = currentHttpRequests - httpRequests;
+
+        sender.put(new Metric(POINTS_ENQUEUED, currentPointsEnqueued - pointsEnqueued));
+        sender.put(new Metric(POINTS_DROPPED, currentPointsDropped - pointsDropped));
+        sender.put(new Metric(POINTS_SENT, currentPointsSent - pointsSent));
+        sender.put(new Metric(QUEUE_FULL, currentQueueFull - queueFull));
+        sender.put(new Metric(QUEUE_DEPTH, (long) stats.getQueueDepth()));
+        sender.put(new Metric(BATCHES, batchDelta));
+        if (batchDelta > 0) {
+            sender.put(new Metric(BATCH_SIZE, (double) (currentBatchPoints - batchPoints) / batchDelta));
+        }
+        sender.put(new Metric(RETRIES, currentRetries - retries));
+        sender.put(new Metric(HTTP_REQUESTS, requestDelta));
+        sender.put(new Metric(HTTP_FAILURES, currentHttpFailures - httpFailures));
+        if (requestDelta > 0) {
+            sender.put(new Metric(HTTP_LATENCY, (currentHttpLatencyNanos - httpLatencyNanos) / 1000000.0 / requestDelta));
+        }
+
+        pointsEnqueued = currentPointsEnqueued;
+        pointsDropped = currentPointsDropped;
+        pointsSent = currentPointsSent;
+        queueFull = currentQueueFull;
+        batches = currentBatches;
+        batchPoints = currentBatchPoints;
+        retries = currentRetries;
+        httpRequests = currentHttpRequests;
+        httpFailures = currentHttpFailures;
+        httpLatencyNanos = currentHttpLatencyNanos;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mici.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MetricPoolTest {
+    private static final SeriesKey KEY = SeriesKey.of("m");
+
+    @Test
+    public void releasedMetricIsReused() {
+        MetricPool pool = new MetricPool(4);
+        int capacity = pool.available();
+        Metric metric = pool.claim().reset(KEY, 1L);
+        assertEquals(capacity - 1, pool.available());
+        metric.release();
+        assertEquals(capacity, pool.available());
+    }
+
+    @Test
+    public void releasingTwiceRecyclesOnce() {
+        MetricPool pool = new MetricPool(4);
+        int capacity = pool.available();
+        Metric first = pool.claim().reset(KEY, 1L);
+        Metric second = pool.claim().reset(KEY, 2L);
+        first.release();
+        first.release();
+        assertEquals(capacity - 1, pool.available());
+
+        // 重新取出后可以再次归还
+        for (int i = 0; i < capacity - 1; i++) {
+            assertNotSame(second, pool.claim());
+        }
+        second.release();
+        Metric reused = pool.claim();
+        assertSame(second, reused);
+        reused.release();
+        reused.release();
+        assertEquals(1, pool.available());
+    }
+
+    @Test
+    public void releaseOfUnpooledMetricIsNoop() {
+        Metric metric = new Metric("m", 1L);
+        metric.release();
+        metric.release();
+        assertEquals(1L, metric.getValue());
+    }
+}
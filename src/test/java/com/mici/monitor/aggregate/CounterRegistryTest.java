@@ -0,0 +1,135 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.clock.ManualClock;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CounterRegistryTest {
+    private static final long START = 1500000000000L;
+
+    private final ManualClock clock = new ManualClock(START);
+    private final RecordingSender sender = new RecordingSender(clock);
+    private final CounterRegistry registry = new CounterRegistry(clock, null);
+
+    @After
+    public void close() throws IOException {
+        sender.close();
+    }
+
+    private static Map<String, String> host(String host) {
+        return Collections.singletonMap("host", host);
+    }
+
+    @Test
+    public void flushReportsTheDeltaOfEachSeriesOnce() {
+        registry.increment("requests", 1);
+        registry.increment("requests", 2);
+        registry.increment("requests", host("a"), 5);
+        registry.increment("requests", host("b"), 7);
+        registry.flush(sender);
+
+        assertEquals(3, sender.metrics.size());
+        assertEquals(3L, sender.metrics.get(0).getValue());
+        assertEquals(START, sender.metrics.get(0).getTimestamp());
+
+        // 没有增量的周期不上报
+        sender.metrics.clear();
+        registry.flush(sender);
+        assertEquals(0, sender.metrics.size());
+
+        registry.increment("requests", 4);
+        registry.flush(sender);
+        assertEquals(4L, sender.find("requests").getValue());
+    }
+
+    @Test
+    public void failedPutKeepsTheDeltaForTheNextFlush() {
+        registry.increment("requests", 3);
+        sender.failAt = 0;
+        try {
+            registry.flush(sender);
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 队列已满
+        }
+        assertNull(sender.find("requests"));
+
+        registry.increment("requests", 2);
+        registry.flush(sender);
+        assertEquals(5L, sender.find("requests").getValue());
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 100000; i++) {
+                        registry.increment("requests", 1);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        long total = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            sender.metrics.clear();
+            registry.flush(sender);
+            for (Metric metric : sender.metrics) {
+                total += (Long) metric.getValue();
+            }
+        }
+        assertEquals(400000L, total);
+    }
+
+    @Test
+    public void idleSeriesAreEvicted() {
+        for (int i = 0; i < 100; i++) {
+            registry.increment("requests", host("request-" + i), 1);
+        }
+        registry.increment("requests", 1);
+        registry.flush(sender);
+        assertEquals(101, registry.size());
+
+        for (int i = 0; i < CounterRegistry.IDLE_FLUSHES - 1; i++) {
+            registry.increment("requests", 1);
+            registry.flush(sender);
+        }
+        registry.increment("requests", 1);
+        registry.flush(sender);
+        assertEquals(1, registry.size());
+
+        // 被移除的时间线再次写入时重新创建
+        sender.metrics.clear();
+        registry.increment("requests", host("request-0"), 2);
+        registry.flush(sender);
+        assertEquals(1, sender.metrics.size());
+        assertEquals(2L, sender.metrics.get(0).getValue());
+        assertEquals(2, registry.size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.ValueType;
+import com.mici.monitor.clock.ManualClock;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GaugeRegistryTest {
+    private static final long START = 1500000000000L;
+
+    private final ManualClock clock = new ManualClock(START);
+    private final RecordingSender sender = new RecordingSender(clock);
+    private final GaugeRegistry registry = new GaugeRegistry(clock, null);
+
+    @After
+    public void close() throws IOException {
+        sender.close();
+    }
+
+    @Test
+    public void flushReportsTheLastValueWithItsTimestamp() {
+        registry.set("queue.size", 1L);
+        clock.advance(100);
+        registry.set("queue.size", 2.5);
+        registry.set("queue.size", Collections.singletonMap("host", "a"), 7L);
+        clock.advance(100);
+        registry.flush(sender);
+
+        assertEquals(2, sender.metrics.size());
+        assertEquals(ValueType.DOUBLE, sender.metrics.get(0).getValueType());
+        assertEquals(2.5, sender.metrics.get(0).getDoubleValue(), 0);
+        assertEquals(START + 100, sender.metrics.get(0).getTimestamp());
+        assertEquals(7L, sender.metrics.get(1).getValue());
+
+        // 没有更新的周期不上报
+        sender.metrics.clear();
+        registry.flush(sender);
+        assertEquals(0, sender.metrics.size());
+    }
+
+    @Test
+    public void failedPutKeepsTheValueUnlessANewerOneArrives() {
+        registry.set("queue.size", 1L);
+        sender.failAt = 0;
+        try {
+            registry.flush(sender);
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 队列已满
+        }
+        registry.flush(sender);
+        assertEquals(1L, sender.find("queue.size").getValue());
+
+        registry.set("queue.size", 2L);
+        sender.failAt = 0;
+        try {
+            registry.flush(sender);
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 队列已满
+        }
+        registry.set("queue.size", 3L);
+        sender.metrics.clear();
+        registry.flush(sender);
+        assertEquals(3L, sender.find("queue.size").getValue());
+    }
+
+    @Test
+    public void idleSeriesAreEvicted() {
+        for (int i = 0; i < 100; i++) {
+            registry.set("latency", Collections.singletonMap("request", "r" + i), 1L);
+        }
+        registry.flush(sender);
+        assertEquals(100, registry.size());
+
+        for (int i = 0; i < GaugeRegistry.IDLE_FLUSHES; i++) {
+            registry.set("queue.size", 1L);
+            registry.flush(sender);
+        }
+        assertEquals(1, registry.size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.clock.ManualClock;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HistogramRegistryTest {
+    private static final long START = 1500000000000L;
+
+    private final ManualClock clock = new ManualClock(START);
+    private final RecordingSender sender = new RecordingSender(clock);
+
+    @After
+    public void close() throws IOException {
+        sender.close();
+    }
+
+    @Test
+    public void flushReportsCountSumMinMaxAndPercentiles() {
+        HistogramRegistry registry = new HistogramRegistry(new double[]{50, 99.9}, clock, null);
+        for (int i = 1; i <= 100; i++) {
+            registry.histogram("latency", null).record(i);
+        }
+        registry.flush(sender);
+
+        assertEquals(6, sender.metrics.size());
+        assertEquals(100L, sender.find("latency.count").getValue());
+        assertEquals(5050L, sender.find("latency.sum").getValue());
+        assertEquals(1L, sender.find("latency.min").getValue());
+        assertEquals(100L, sender.find("latency.max").getValue());
+        assertEquals(50L, sender.find("latency.p50").getValue());
+        assertEquals(100L, sender.find("latency.p999").getValue());
+        assertEquals(START, sender.find("latency.count").getTimestamp());
+
+        sender.metrics.clear();
+        registry.flush(sender);
+        assertEquals(0, sender.metrics.size());
+    }
+
+    @Test
+    public void failedPutKeepsTheSnapshotForTheNextFlush() {
+        HistogramRegistry registry = new HistogramRegistry(new double[]{50}, clock, null);
+        registry.histogram("latency", null).record(10);
+        registry.histogram("latency", null).record(30);
+
+        sender.failAt = 2;
+        try {
+            registry.flush(sender);
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 队列已满
+        }
+        assertEquals(2, sender.metrics.size());
+
+        // 失败之后的记录计入下一个周期
+        registry.histogram("latency", null).record(1000);
+        clock.advance(10000);
+        registry.flush(sender);
+        assertEquals(5 + 5, sender.metrics.size());
+        assertEquals(2L, sender.metrics.get(0).getValue());
+        assertEquals(40L, sender.metrics.get(1).getValue());
+        assertEquals(10L, sender.metrics.get(2).getValue());
+        assertEquals(30L, sender.metrics.get(3).getValue());
+        assertEquals(START, sender.metrics.get(4).getTimestamp());
+        assertEquals(1L, sender.metrics.get(5).getValue());
+        assertEquals(1000L, sender.metrics.get(6).getValue());
+        assertEquals(START + 10000, sender.metrics.get(5).getTimestamp());
+    }
+
+    @Test
+    public void idleSeriesAreEvicted() {
+        HistogramRegistry registry = new HistogramRegistry(new double[]{50}, clock, null);
+        for (int i = 0; i < 100; i++) {
+            registry.histogram("latency", Collections.singletonMap("request", "r" + i)).record(1);
+        }
+        registry.flush(sender);
+        assertEquals(100, registry.size());
+
+        for (int i = 0; i < HistogramRegistry.IDLE_FLUSHES; i++) {
+            registry.histogram("latency", null).record(1);
+            registry.flush(sender);
+        }
+        assertEquals(1, registry.size());
+
+        // 移除前拿到的直方图在下一个周期还会上报一次
+        Histogram held = registry.histogram("latency", null);
+        for (int i = 0; i < HistogramRegistry.IDLE_FLUSHES; i++) {
+            registry.flush(sender);
+        }
+        assertEquals(0, registry.size());
+        held.record(5);
+        sender.metrics.clear();
+        registry.flush(sender);
+        assertEquals(1L, sender.find("latency.count").getValue());
+    }
+}
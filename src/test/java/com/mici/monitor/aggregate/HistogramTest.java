@@ -0,0 +1,64 @@
+package com.mici.monitor.aggregate;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            long value = i < 1000 ? i : random.nextLong() >>> (1 + random.nextInt(62));
+            int index = Histogram.index(value);
+            assertTrue(index >= 0 && index < Histogram.BUCKET_COUNT);
+            assertTrue(value + " in bucket " + index, Histogram.lowerBound(index) <= value && value <= Histogram.upperBound(index));
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void snapshotReportsPercentilesWithinBucketError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshotAndReset(new long[Histogram.BUCKET_COUNT]);
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(50005000, snapshot.getSum());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(10000, snapshot.getMax());
+        assertEquals(5000, snapshot.percentile(50), 5000 / 32.0);
+        assertEquals(9900, snapshot.percentile(99), 9900 / 32.0);
+
+        Histogram.Snapshot empty = histogram.snapshotAndReset(new long[Histogram.BUCKET_COUNT]);
+        assertEquals(0, empty.getCount());
+    }
+
+    @Test
+    public void concurrentSnapshotsNeverExposeSentinels() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 2000000; i++) {
+                    histogram.record(100 + i % 1000);
+                }
+            }
+        });
+        writer.start();
+        long[] counts = new long[Histogram.BUCKET_COUNT];
+        while (writer.isAlive()) {
+            Histogram.Snapshot snapshot = histogram.snapshotAndReset(counts);
+            if (snapshot.getCount() > 0) {
+                assertTrue(snapshot.getMin() >= 0 && snapshot.getMin() < 1200);
+                assertTrue(snapshot.getMax() >= 100 && snapshot.getMax() < 1200);
+            }
+        }
+        writer.join();
+    }
+}
@@ -0,0 +1,48 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.MonitorConfig;
+import com.mici.monitor.client.Sender;
+import com.mici.monitor.clock.Clock;
+import com.mici.monitor.exception.BufferQueueFullException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 同步模式的Sender，put只记录数据点，不发送
+ */
+class RecordingSender extends Sender {
+    final List<Metric> metrics = new ArrayList<Metric>();
+    // 接下来按顺序第几次put抛出BufferQueueFullException，小于0表示不失败
+    int failAt = -1;
+
+    RecordingSender(Clock clock) {
+        super(MonitorConfig.address("127.0.0.1", 8242).asyncPut(false).clock(clock).config());
+    }
+
+    @Override
+    public void put(Metric metric) {
+        if (failAt == 0) {
+            failAt = -1;
+            throw new BufferQueueFullException("The buffer queue is full.");
+        }
+        if (failAt > 0) {
+            failAt--;
+        }
+        metrics.add(metric);
+    }
+
+    Metric find(String name) {
+        Metric found = null;
+        for (Metric metric : metrics) {
+            if (metric.getName().equals(name)) {
+                if (found != null) {
+                    throw new AssertionError("duplicated " + name);
+                }
+                found = metric;
+            }
+        }
+        return found;
+    }
+}
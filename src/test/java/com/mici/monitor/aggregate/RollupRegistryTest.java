@@ -0,0 +1,98 @@
+package com.mici.monitor.aggregate;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.clock.ManualClock;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollupRegistryTest {
+    private static final long START = 1500000000000L;
+
+    private final ManualClock clock = new ManualClock(START);
+
+    private RollupRegistry registry(RollupAggregation aggregation) {
+        Map<String, RollupRule> rules = new LinkedHashMap<String, RollupRule>();
+        rules.put("cpu", new RollupRule(10, aggregation));
+        return new RollupRegistry(rules, clock);
+    }
+
+    private static Metric point(long timestamp, long value) {
+        Metric metric = new Metric("cpu.user", value);
+        metric.setTimestamp(timestamp);
+        return metric;
+    }
+
+    @Test
+    public void bucketIsEmittedOnceItEnds() {
+        RollupRegistry registry = registry(RollupAggregation.SUM);
+        assertTrue(registry.record(point(START + 1000, 1)));
+        assertTrue(registry.record(point(START + 9999, 2)));
+
+        clock.set(START + 9999);
+        assertTrue(registry.collect(false).isEmpty());
+
+        clock.set(START + 10000);
+        List<Metric> metrics = registry.collect(false);
+        assertEquals(1, metrics.size());
+        assertEquals(3, metrics.get(0).getLongValue());
+        assertEquals(START, metrics.get(0).getTimestamp());
+        assertEquals("10s", metrics.get(0).getGranularity());
+
+        assertTrue(registry.collect(false).isEmpty());
+    }
+
+    @Test
+    public void newerBucketClosesThePreviousOne() {
+        RollupRegistry registry = registry(RollupAggregation.MAX);
+        registry.record(point(START + 1000, 5));
+        registry.record(point(START + 2000, 7));
+        registry.record(point(START + 12000, 3));
+
+        List<Metric> metrics = registry.collect(false);
+        assertEquals(1, metrics.size());
+        assertEquals(7, metrics.get(0).getLongValue());
+        assertEquals(START, metrics.get(0).getTimestamp());
+
+        metrics = registry.collect(true);
+        assertEquals(1, metrics.size());
+        assertEquals(3, metrics.get(0).getLongValue());
+        assertEquals(START + 10000, metrics.get(0).getTimestamp());
+    }
+
+    @Test
+    public void latePointFoldsIntoTheOpenBucket() {
+        RollupRegistry registry = registry(RollupAggregation.SUM);
+        registry.record(point(START + 1000, 1));
+        clock.set(START + 10000);
+        assertEquals(1, registry.collect(false).size());
+
+        registry.record(point(START + 5000, 4));
+        clock.set(START + 15000);
+        assertTrue(registry.collect(false).isEmpty());
+
+        clock.set(START + 20000);
+        List<Metric> metrics = registry.collect(false);
+        assertEquals(1, metrics.size());
+        assertEquals(4, metrics.get(0).getLongValue());
+        assertEquals(START + 10000, metrics.get(0).getTimestamp());
+    }
+
+    @Test
+    public void unmatchedAndRolledUpPointsPassThrough() {
+        RollupRegistry registry = registry(RollupAggregation.LAST);
+        Metric other = new Metric("mem.used", 1L);
+        assertFalse(registry.record(other));
+
+        Metric rolledUp = point(START, 1);
+        rolledUp.setGranularity("1m");
+        assertFalse(registry.record(rolledUp));
+        assertTrue(registry.collect(true).isEmpty());
+    }
+}
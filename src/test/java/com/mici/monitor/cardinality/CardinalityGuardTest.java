@@ -0,0 +1,93 @@
+package com.mici.monitor.cardinality;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import com.mici.monitor.aggregate.CounterRegistry;
+import com.mici.monitor.aggregate.GaugeRegistry;
+import com.mici.monitor.aggregate.HistogramRegistry;
+import com.mici.monitor.clock.ManualClock;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CardinalityGuardTest {
+    private final ManualClock clock = new ManualClock(0);
+
+    private static Map<String, String> host(int i) {
+        return Collections.singletonMap("host", "h" + i);
+    }
+
+    @Test
+    public void dropsNewSeriesOverTheLimit() {
+        CardinalityGuard guard = new CardinalityGuard(2, 100, CardinalityPolicy.DROP, 60000, clock);
+        assertTrue(guard.admit(new Metric("cpu", 1L, host(1))));
+        assertTrue(guard.admit(new Metric("cpu", 1L, host(2))));
+        assertFalse(guard.admit(new Metric("cpu", 1L, host(3))));
+        // 已接纳的时间线和其他指标名不受影响
+        assertTrue(guard.admit(new Metric("cpu", 1L, host(1))));
+        assertTrue(guard.admit(new Metric("mem", 1L, host(3))));
+        assertEquals(1, guard.getRejected());
+        assertEquals("cpu", guard.getTopOffenders(5).get(0).getName());
+    }
+
+    @Test
+    public void overflowRewritesTheSeriesKey() {
+        CardinalityGuard guard = new CardinalityGuard(1, 100, CardinalityPolicy.OVERFLOW, 60000, clock);
+        SeriesKey first = SeriesKey.of("cpu", host(1));
+        assertSame(first, guard.admit(first));
+
+        SeriesKey overflow = guard.admit(SeriesKey.of("cpu", host(2)));
+        assertEquals("true", overflow.getTags().get(CardinalityGuard.OVERFLOW_TAG));
+        assertSame(overflow, guard.admit(overflow));
+
+        Metric metric = new Metric("cpu", 1L, host(3));
+        assertTrue(guard.admit(metric));
+        assertSame(overflow, metric.getSeriesKey());
+        assertEquals(2, guard.getRejected());
+    }
+
+    @Test
+    public void admittedSeriesAreClearedAfterTheResetInterval() {
+        CardinalityGuard guard = new CardinalityGuard(1, 100, CardinalityPolicy.DROP, 60000, clock);
+        assertNotSame(null, guard.admit(SeriesKey.of("cpu", host(1))));
+        assertNull(guard.admit(SeriesKey.of("cpu", host(2))));
+
+        clock.advance(59999);
+        guard.flush(null);
+        assertNull(guard.admit(SeriesKey.of("cpu", host(2))));
+
+        clock.advance(1);
+        guard.flush(null);
+        assertNotSame(null, guard.admit(SeriesKey.of("cpu", host(2))));
+    }
+
+    @Test
+    public void registriesDoNotCreateStateForRejectedSeries() {
+        CardinalityGuard guard = new CardinalityGuard(2, 100, CardinalityPolicy.DROP, 60000, clock);
+        CounterRegistry counters = new CounterRegistry(clock, guard);
+        assertTrue(counters.increment("requests", 1));
+        assertTrue(counters.increment("requests", host(1), 1));
+        assertFalse(counters.increment("requests", host(2), 1));
+        assertTrue(counters.increment("requests", 1));
+
+        GaugeRegistry gauges = new GaugeRegistry(clock, guard);
+        assertTrue(gauges.set("load", host(1), 1L));
+        assertTrue(gauges.set("load", host(2), 1.5));
+        assertFalse(gauges.set("load", host(3), 1L));
+
+        HistogramRegistry histograms = new HistogramRegistry(new double[]{50}, clock, guard);
+        assertSame(histograms.histogram("latency", host(1)), histograms.histogram("latency", host(1)));
+        histograms.histogram("latency", host(2));
+        assertNotSame(histograms.histogram("latency", host(1)), histograms.histogram("latency", host(3)));
+        assertSame(histograms.histogram("latency", host(3)), histograms.histogram("latency", host(4)));
+        assertEquals(5, guard.getRejected());
+    }
+}
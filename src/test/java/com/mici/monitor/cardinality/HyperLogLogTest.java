@@ -0,0 +1,51 @@
+package com.mici.monitor.cardinality;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog(10).estimate());
+    }
+
+    @Test
+    public void estimateIsWithinThreeStandardErrors() {
+        Random random = new Random(11);
+        // precision 10：标准误差约3.25%
+        for (int n : new int[]{100, 1000, 10000, 1000000}) {
+            HyperLogLog sketch = new HyperLogLog(10);
+            for (int i = 0; i < n; i++) {
+                sketch.add(random.nextLong());
+            }
+            double error = Math.abs(sketch.estimate() - n) / (double) n;
+            assertTrue(n + " estimated as " + sketch.estimate(), error < 0.1);
+        }
+    }
+
+    @Test
+    public void duplicatesAreNotCounted() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        Random random = new Random(5);
+        long[] hashes = new long[5000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+        }
+        for (int round = 0; round < 10; round++) {
+            for (long hash : hashes) {
+                sketch.add(hash);
+            }
+        }
+        assertEquals(5000, sketch.estimate(), 5000 * 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void precisionIsChecked() {
+        new HyperLogLog(3);
+    }
+}
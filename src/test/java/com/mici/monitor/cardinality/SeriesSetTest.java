@@ -0,0 +1,102 @@
+package com.mici.monitor.cardinality;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeriesSetTest {
+
+    @Test
+    public void tableGrowsWithTheElements() {
+        SeriesSet set = new SeriesSet(100000);
+        assertEquals(64, set.length());
+
+        Random random = new Random(3);
+        long[] hashes = new long[1000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            assertTrue(set.addIfAbsent(hashes[i]));
+        }
+        assertEquals(1000, set.size());
+        assertEquals(2048, set.length());
+
+        // 扩容之后已有的元素仍然存在，不会重复计数
+        for (long hash : hashes) {
+            assertTrue(set.addIfAbsent(hash));
+        }
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    public void fullSetRejectsOnlyNewElements() {
+        SeriesSet set = new SeriesSet(1000);
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(set.addIfAbsent(i * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(2048, set.length());
+        assertFalse(set.addIfAbsent(-1L));
+        assertTrue(set.addIfAbsent(500 * 0x9E3779B97F4A7C15L));
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    public void reservedValuesAreStillAccepted() {
+        SeriesSet set = new SeriesSet(10);
+        assertTrue(set.addIfAbsent(0L));
+        assertTrue(set.addIfAbsent(1L));
+        assertTrue(set.addIfAbsent(0L));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void concurrentInsertsWhileGrowing() throws InterruptedException {
+        final SeriesSet set = new SeriesSet(1 << 20);
+        final int threads = 8;
+        final int perThread = 50000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // 相邻线程的值有一半重叠
+                    for (int i = 0; i < perThread; i++) {
+                        long hash = ((long) offset * perThread / 2 + i + 2) * 0x9E3779B97F4A7C15L;
+                        if (!set.addIfAbsent(hash)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(0, failures.get());
+        int distinct = (threads + 1) * perThread / 2;
+        assertEquals(distinct, set.size());
+        for (int i = 0; i < distinct; i++) {
+            assertTrue(set.addIfAbsent((i + 2L) * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(distinct, set.size());
+    }
+}
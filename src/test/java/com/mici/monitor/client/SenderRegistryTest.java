@@ -0,0 +1,73 @@
+package com.mici.monitor.client;
+
+import com.mici.monitor.MonitorConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SenderRegistryTest {
+    private final MonitorConfig config = MonitorConfig.address("127.0.0.1", 8242).config();
+    private final MonitorConfig other = MonitorConfig.address("127.0.0.1", 8243).config();
+
+    @After
+    public void tearDown() throws Exception {
+        SenderRegistry.close(config);
+        SenderRegistry.close(other);
+    }
+
+    @Test
+    public void sameConfigSharesOneSender() {
+        Sender sender = SenderRegistry.get(config);
+        assertSame(sender, SenderRegistry.get(config));
+        assertNotSame(sender, SenderRegistry.get(other));
+    }
+
+    @Test
+    public void concurrentGetCreatesOneSender() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Sender> senders = Collections.synchronizedList(new ArrayList<Sender>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    senders.add(SenderRegistry.get(config));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8, senders.size());
+        for (Sender sender : senders) {
+            assertSame(senders.get(0), sender);
+        }
+    }
+
+    @Test
+    public void closeRemovesSender() throws Exception {
+        Sender sender = SenderRegistry.get(config);
+        SenderRegistry.close(config);
+        Sender created = SenderRegistry.get(config);
+        assertNotSame(sender, created);
+        // 未注册的配置关闭时什么也不做
+        SenderRegistry.close(other);
+        SenderRegistry.close(other);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mici.monitor.clock;
+
+import com.mici.monitor.Metric;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClocksTest {
+
+    @After
+    public void restore() {
+        Clocks.set(null);
+    }
+
+    private static boolean tickerRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("Monitor-Clock-Tick".equals(thread.getName()) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean tickerStopped() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (!tickerRunning()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    @Test
+    public void sharedClockStopsWithTheLastRelease() throws InterruptedException {
+        assertSame(Clocks.SYSTEM, Clocks.get());
+
+        Clock first = Clocks.acquire(1);
+        Clock second = Clocks.acquire(1);
+        assertTrue(first instanceof CachedClock);
+        assertSame(first, second);
+        assertSame(first, Clocks.get());
+
+        Clocks.release(first);
+        assertSame(first, Clocks.get());
+        assertTrue(tickerRunning());
+
+        Clocks.release(second);
+        assertSame(Clocks.SYSTEM, Clocks.get());
+        assertTrue(tickerStopped());
+    }
+
+    @Test
+    public void sharedClocksAreKeptPerResolution() throws InterruptedException {
+        Clock fine = Clocks.acquire(1);
+        Clock coarse = Clocks.acquire(10);
+        assertEquals(10, ((CachedClock) coarse).getResolution());
+        assertSame(coarse, Clocks.get());
+
+        Clocks.release(coarse);
+        assertSame(fine, Clocks.get());
+        Clocks.release(fine);
+        assertSame(Clocks.SYSTEM, Clocks.get());
+        assertTrue(tickerStopped());
+    }
+
+    @Test
+    public void configuredClockStampsMetricsUntilReleased() {
+        ManualClock clock = new ManualClock(1000L);
+        Clocks.acquire(clock);
+        assertEquals(1000L, new Metric("test", 1L).getTimestamp());
+
+        Clocks.release(clock);
+        assertSame(Clocks.SYSTEM, Clocks.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutAcquireFails() {
+        Clocks.release(Clocks.SYSTEM);
+    }
+
+    @Test
+    public void overrideTakesPrecedenceAndCanBeCleared() {
+        ManualClock clock = new ManualClock(1000L);
+        Clocks.set(clock);
+        assertEquals(1000L, new Metric("test", 1L).getTimestamp());
+
+        clock.advance(500L);
+        assertEquals(1500L, new Metric("test", 1L).getTimestamp());
+
+        Clocks.set(null);
+        assertSame(Clocks.SYSTEM, Clocks.get());
+    }
+
+    @Test
+    public void closedCachedClockFallsBackToSystemTime() throws InterruptedException {
+        CachedClock clock = new CachedClock(3600000);
+        long cached = clock.currentTimeMillis();
+        Thread.sleep(20);
+        assertEquals(cached, clock.currentTimeMillis());
+
+        clock.close();
+        assertFalse(clock.currentTimeMillis() == cached);
+    }
+}
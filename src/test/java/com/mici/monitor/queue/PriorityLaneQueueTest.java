@@ -0,0 +1,169 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.Priority;
+import com.mici.monitor.exception.BufferQueueFullException;
+import com.mici.monitor.stats.ClientStats;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PriorityLaneQueueTest {
+
+    private static PriorityLaneQueue queue(int capacity, int[] weights, ClientStats stats) {
+        DataQueue[] lanes = new DataQueue[Priority.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new MetricQueue(capacity, 10, false);
+        }
+        return new PriorityLaneQueue(lanes, weights, capacity, false, Collections.<String, Priority>emptyMap(),
+                new ParkingWaitStrategy(), 10, stats);
+    }
+
+    private static Metric metric(Priority priority) {
+        Metric metric = new Metric(priority.name(), 1L);
+        metric.setPriority(priority);
+        return metric;
+    }
+
+    private static int[] countByPriority(List<Metric> metrics) {
+        int[] counts = new int[Priority.values().length];
+        for (Metric metric : metrics) {
+            counts[metric.getPriority().ordinal()]++;
+        }
+        return counts;
+    }
+
+    @Test
+    public void drainSplitsBatchesByWeight() throws InterruptedException {
+        PriorityLaneQueue queue = queue(30000, new int[]{5, 3, 2}, null);
+        for (int i = 0; i < 10000; i++) {
+            for (Priority priority : Priority.values()) {
+                queue.send(metric(priority));
+            }
+        }
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(100, queue.drainTo(metrics, 100, 0));
+        }
+        int[] counts = countByPriority(metrics);
+        assertEquals(500, counts[Priority.HIGH.ordinal()]);
+        assertEquals(300, counts[Priority.NORMAL.ordinal()]);
+        assertEquals(200, counts[Priority.LOW.ordinal()]);
+    }
+
+    @Test
+    public void smallBatchesKeepTheWeightedSplit() throws InterruptedException {
+        PriorityLaneQueue queue = queue(30000, new int[]{5, 3, 2}, null);
+        for (int i = 0; i < 10000; i++) {
+            for (Priority priority : Priority.values()) {
+                queue.send(metric(priority));
+            }
+        }
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(3, queue.drainTo(metrics, 3, 0));
+        }
+        int[] counts = countByPriority(metrics);
+        assertEquals(1500, counts[Priority.HIGH.ordinal()], 2);
+        assertEquals(900, counts[Priority.NORMAL.ordinal()], 2);
+        assertEquals(600, counts[Priority.LOW.ordinal()], 2);
+    }
+
+    @Test
+    public void unusedQuotaIsFilledInPriorityOrder() throws InterruptedException {
+        PriorityLaneQueue queue = queue(100, new int[]{5, 3, 2}, null);
+        for (int i = 0; i < 10; i++) {
+            queue.send(metric(Priority.LOW));
+        }
+        for (int i = 0; i < 50; i++) {
+            queue.send(metric(Priority.NORMAL));
+        }
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        assertEquals(40, queue.drainTo(metrics, 40, 0));
+        int[] counts = countByPriority(metrics);
+        assertEquals(32, counts[Priority.NORMAL.ordinal()]);
+        assertEquals(8, counts[Priority.LOW.ordinal()]);
+        assertEquals(20, queue.size());
+    }
+
+    @Test
+    public void laneThatRanAloneStillGetsItsShareWhenCompeting() throws InterruptedException {
+        PriorityLaneQueue queue = queue(100000, new int[]{8, 1, 1}, null);
+        List<Metric> metrics = new ArrayList<Metric>();
+        // 只有低优先级的积压，每一批都由补满消费
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 500; i++) {
+                queue.send(metric(Priority.LOW));
+            }
+            metrics.clear();
+            assertEquals(500, queue.drainTo(metrics, 500, 0));
+        }
+        for (int i = 0; i < 500; i++) {
+            queue.send(metric(Priority.LOW));
+        }
+
+        // 高优先级开始饱和，低优先级在两批之内恢复按权重的份额
+        for (int i = 0; i < 10000; i++) {
+            queue.send(metric(Priority.HIGH));
+            queue.send(metric(Priority.NORMAL));
+        }
+        metrics.clear();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(500, queue.drainTo(metrics, 500, 0));
+        }
+        int[] counts = countByPriority(metrics);
+        assertTrue(counts[Priority.LOW.ordinal()] >= 50);
+    }
+
+    @Test
+    public void higherPriorityShedsTheLowestLane() throws InterruptedException {
+        ClientStats stats = new ClientStats();
+        PriorityLaneQueue queue = queue(4, new int[]{1, 1, 1}, stats);
+        queue.send(metric(Priority.LOW));
+        queue.send(metric(Priority.NORMAL));
+        queue.send(metric(Priority.NORMAL));
+        queue.send(metric(Priority.LOW));
+
+        queue.send(metric(Priority.HIGH));
+        queue.send(metric(Priority.HIGH));
+        queue.send(metric(Priority.HIGH));
+        assertEquals(4, queue.size());
+        assertEquals(3, stats.getPointsDropped());
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        assertEquals(4, queue.drainTo(metrics, 10, 0));
+        int[] counts = countByPriority(metrics);
+        assertEquals(3, counts[Priority.HIGH.ordinal()]);
+        assertEquals(1, counts[Priority.NORMAL.ordinal()]);
+        assertEquals(0, counts[Priority.LOW.ordinal()]);
+    }
+
+    @Test
+    public void fullQueueWithoutBackpressureRejects() {
+        PriorityLaneQueue queue = queue(2, new int[]{1, 1, 1}, null);
+        queue.send(metric(Priority.NORMAL));
+        queue.send(metric(Priority.NORMAL));
+        try {
+            queue.send(metric(Priority.NORMAL));
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 同优先级不能挤掉
+        }
+        try {
+            queue.send(metric(Priority.LOW));
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 更低的优先级不能挤掉
+        }
+        assertEquals(2, queue.size());
+    }
+}
@@ -0,0 +1,161 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new RingBuffer<Object>(1).capacity());
+        assertEquals(8, new RingBuffer<Object>(5).capacity());
+        assertEquals(1024, new RingBuffer<Object>(1024).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMustBePositive() {
+        new RingBuffer<Object>(0);
+    }
+
+    @Test
+    public void offerAndPollInFifoOrderAcrossWraps() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            while (buffer.offer(next)) {
+                next++;
+            }
+            assertEquals(4, buffer.size());
+            assertEquals(expected++, (int) buffer.poll());
+            assertEquals(expected++, (int) buffer.poll());
+            assertEquals(2, buffer.size());
+        }
+        Integer value;
+        while ((value = buffer.poll()) != null) {
+            assertEquals(expected++, (int) value);
+        }
+        assertEquals(next, expected);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void everyElementIsDeliveredOnceUnderContention() throws InterruptedException {
+        final RingBuffer<Long> buffer = new RingBuffer<Long>(64);
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 200000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        List<Thread> producerThreads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    for (int i = 1; i <= perProducer; i++) {
+                        Long value = base + i;
+                        while (!buffer.offer(value)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producerThreads.add(producer);
+        }
+        List<Thread> consumerThreads = new ArrayList<Thread>();
+        for (int c = 0; c < consumers; c++) {
+            Thread consumer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    while (true) {
+                        Long value = buffer.poll();
+                        if (value != null) {
+                            sum.addAndGet(value);
+                            count.incrementAndGet();
+                        } else if (!producing.get() && buffer.isEmpty()) {
+                            return;
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            consumer.start();
+            consumerThreads.add(consumer);
+        }
+
+        start.countDown();
+        for (Thread producer : producerThreads) {
+            producer.join();
+        }
+        producing.set(false);
+        for (Thread consumer : consumerThreads) {
+            consumer.join();
+        }
+
+        long n = (long) producers * perProducer;
+        assertEquals(n, count.get());
+        assertEquals(n * (n + 1) / 2, sum.get());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void queueRejectsWhenFullWithoutBackpressure() throws InterruptedException {
+        RingBufferQueue queue = new RingBufferQueue(2, 10, false, new ParkingWaitStrategy());
+        queue.send(new Metric("a", 1L));
+        queue.send(new Metric("b", 2L));
+        try {
+            queue.send(new Metric("c", 3L));
+            fail();
+        } catch (BufferQueueFullException expected) {
+            // 容量为2
+        }
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        assertEquals(2, queue.drainTo(metrics, 10, 0));
+        assertEquals("a", metrics.get(0).getName());
+        assertEquals("b", metrics.get(1).getName());
+        assertNull(queue.receive(1));
+        assertEquals(0, queue.drainTo(metrics, 10, 5));
+
+        queue.forbiddenSend();
+        try {
+            queue.send(new Metric("d", 4L));
+            fail();
+        } catch (IllegalStateException expected) {
+            // 已禁止写入
+        }
+        assertFalse(queue.size() > 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.serialize.MetricEncoder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpillCodecTest {
+
+    private static String encode(Metric metric) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MetricEncoder().encode(Collections.singletonList(metric), out);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    private static Metric spill(Metric metric) {
+        SpillCodec codec = new SpillCodec();
+        ByteBuffer encoded = codec.encode(metric);
+        ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+        copy.put(encoded).flip();
+        return codec.decode(copy);
+    }
+
+    private static void assertSameAfterSpill(Object value) throws Exception {
+        Map<String, String> tags = new HashMap<String, String>();
+        tags.put("host", "a");
+        Metric metric = new Metric("m", value, tags);
+        metric.setTimestamp(1000L);
+        metric.setGranularity("1m");
+        metric.setVersion(3L);
+        assertEquals(encode(metric), encode(spill(metric)));
+    }
+
+    @Test
+    public void objectNumbersAreSpilledAsNumbers() throws Exception {
+        assertSameAfterSpill(new BigDecimal("12.50"));
+        assertSameAfterSpill(new BigDecimal("1E+3"));
+        assertSameAfterSpill(new BigInteger("123456789012345678901234567890"));
+        assertSameAfterSpill(new AtomicLong(42));
+        assertSameAfterSpill(7);
+        assertSameAfterSpill(Long.MIN_VALUE);
+        assertSameAfterSpill(1.5d);
+        assertSameAfterSpill(Double.NaN);
+        assertSameAfterSpill(2.5f);
+
+        Metric metric = new Metric("m", new AtomicLong(42));
+        metric.setTimestamp(1000L);
+        assertEquals("[{\"metric\":\"m\",\"tags\":{},\"timestamp\":1000,\"value\":42}]", encode(spill(metric)));
+    }
+
+    @Test
+    public void otherObjectValuesKeepTheirType() throws Exception {
+        assertSameAfterSpill(null);
+        assertSameAfterSpill(true);
+        assertSameAfterSpill("text");
+        assertSameAfterSpill(1L);
+        assertSameAfterSpill(0.25d);
+    }
+}
@@ -0,0 +1,143 @@
+package com.mici.monitor.queue;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.exception.BufferQueueFullException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SpillQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SpillQueue queue(File directory, int highWaterMark, int segmentSize, int maxSegments)
+            throws IOException {
+        return new SpillQueue(new MetricQueue(100, 10, false), directory, highWaterMark, segmentSize, maxSegments,
+                false, new ParkingWaitStrategy(), 10);
+    }
+
+    private static void send(SpillQueue queue, int from, int to) {
+        for (int i = from; i < to; i++) {
+            queue.send(new Metric("m" + i, (long) i));
+        }
+    }
+
+    private static void assertSequence(List<Metric> metrics, int from) {
+        for (int i = 0; i < metrics.size(); i++) {
+            assertEquals("m" + (from + i), metrics.get(i).getName());
+            assertEquals((long) (from + i), metrics.get(i).getValue());
+        }
+    }
+
+    private static void acknowledge(List<Metric> metrics) {
+        for (Metric metric : metrics) {
+            if (metric.getAcknowledgement() != null) {
+                metric.getAcknowledgement().acknowledge();
+            }
+        }
+    }
+
+    @Test
+    public void spilledMetricsAreReplayedAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        SpillQueue queue = queue(directory, 2, 4096, 4);
+        send(queue, 0, 10);
+        assertEquals(10, queue.size());
+
+        // 不关闭，模拟进程退出，内存队列中的数据丢失
+        SpillQueue restarted = queue(directory, 2, 4096, 4);
+        assertEquals(8, restarted.size());
+        List<Metric> metrics = new ArrayList<Metric>();
+        assertEquals(8, restarted.drainTo(metrics, 100, 0));
+        assertSequence(metrics, 2);
+    }
+
+    @Test
+    public void onlyAcknowledgedMetricsAreNotReplayed() throws Exception {
+        File directory = folder.newFolder();
+        SpillQueue queue = queue(directory, 2, 4096, 4);
+        send(queue, 0, 10);
+
+        List<Metric> sent = new ArrayList<Metric>();
+        assertEquals(3, queue.drainTo(sent, 3, 0));
+        assertSequence(sent, 0);
+        assertNotNull(sent.get(2).getAcknowledgement());
+        acknowledge(sent);
+
+        List<Metric> inFlight = new ArrayList<Metric>();
+        assertEquals(3, queue.drainTo(inFlight, 3, 0));
+        assertSequence(inFlight, 3);
+
+        SpillQueue restarted = queue(directory, 2, 4096, 4);
+        List<Metric> replayed = new ArrayList<Metric>();
+        assertEquals(7, restarted.drainTo(replayed, 100, 0));
+        assertSequence(replayed, 3);
+    }
+
+    @Test
+    public void receiveReadsFromDisk() throws Exception {
+        SpillQueue queue = queue(folder.newFolder(), 1, 4096, 4);
+        send(queue, 0, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("m" + i, queue.receive().getName());
+        }
+        send(queue, 3, 4);
+        assertEquals("m3", queue.receive(10).getName());
+        assertEquals(null, queue.receive(10));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void segmentsAreReused() throws Exception {
+        File directory = folder.newFolder();
+        SpillQueue queue = queue(directory, 0, 256, 2);
+        List<Metric> metrics = new ArrayList<Metric>();
+        for (int i = 0; i < 1000; i++) {
+            send(queue, i, i + 1);
+            metrics.clear();
+            assertEquals(1, queue.drainTo(metrics, 10, 0));
+            assertSequence(metrics, i);
+            acknowledge(metrics);
+        }
+        assertTrue(directory.list().length <= 2);
+
+        queue.forbiddenSend();
+        queue.waitEmpty();
+    }
+
+    @Test
+    public void fullSpillLogRejectsWithoutReordering() throws Exception {
+        SpillQueue queue = queue(folder.newFolder(), 0, 256, 1);
+        int sent = 0;
+        try {
+            while (true) {
+                send(queue, sent, sent + 1);
+                sent++;
+            }
+        } catch (BufferQueueFullException expected) {
+            // 磁盘上还有未读的数据，不能写入内存队列
+        }
+        assertTrue(sent > 0);
+        assertEquals(sent, queue.size());
+
+        List<Metric> metrics = new ArrayList<Metric>();
+        assertEquals(sent, queue.drainTo(metrics, 1000, 0));
+        assertSequence(metrics, 0);
+        // 磁盘上没有未读的数据，写入内存队列不会打乱顺序
+        send(queue, sent, sent + 1);
+        acknowledge(metrics);
+        send(queue, sent + 1, sent + 2);
+        metrics.clear();
+        assertEquals(2, queue.drainTo(metrics, 1000, 0));
+        assertSequence(metrics, sent);
+    }
+}
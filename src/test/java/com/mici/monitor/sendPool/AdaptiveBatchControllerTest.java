@@ -0,0 +1,89 @@
+package com.mici.monitor.sendPool;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchControllerTest {
+
+    private static AdaptiveBatchController controller(int initialBatchSize) {
+        // 批次10~1000，等待1~50毫秒，请求体不超过100KB
+        return new AdaptiveBatchController(10, 1000, 1, 50, 100000, initialBatchSize, 10);
+    }
+
+    @Test
+    public void initialValuesAreClamped() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(10, 1000, 1, 50, 100000, 5000, 0);
+        assertEquals(1000, controller.getBatchSize());
+        assertEquals(1, controller.getLingerTime());
+    }
+
+    @Test
+    public void backlogGrowsBatchUpToMax() {
+        AdaptiveBatchController controller = controller(100);
+        controller.onBatch(100, 0, 0);
+        assertEquals(200, controller.getBatchSize());
+        assertEquals(1, controller.getLingerTime());
+
+        // 批次没有攒满但队列积压
+        controller.onBatch(50, 0, 500);
+        assertEquals(400, controller.getBatchSize());
+
+        for (int i = 0; i < 10; i++) {
+            controller.onBatch(controller.getBatchSize(), 0, 0);
+        }
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void smallBatchesShrinkAndLingerForRoundTrip() {
+        AdaptiveBatchController controller = controller(400);
+        controller.onRoundTrip(TimeUnit.MILLISECONDS.toNanos(20));
+        controller.onBatch(100, 0, 0);
+        assertEquals(300, controller.getBatchSize());
+        assertEquals(20, controller.getLingerTime());
+
+        // 超过一半时保持不变
+        controller.onBatch(200, 0, 0);
+        assertEquals(300, controller.getBatchSize());
+
+        for (int i = 0; i < 50; i++) {
+            controller.onBatch(0, 0, 0);
+        }
+        assertEquals(10, controller.getBatchSize());
+    }
+
+    @Test
+    public void lingerTimeIsBoundedByMax() {
+        AdaptiveBatchController controller = controller(100);
+        controller.onRoundTrip(TimeUnit.SECONDS.toNanos(1));
+        controller.onBatch(1, 0, 0);
+        assertEquals(50, controller.getLingerTime());
+        assertEquals(1000.0, controller.getRoundTripTime(), 0.001);
+    }
+
+    @Test
+    public void roundTripIsAveraged() {
+        AdaptiveBatchController controller = controller(100);
+        controller.onRoundTrip(TimeUnit.MILLISECONDS.toNanos(10));
+        controller.onRoundTrip(TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(12.0, controller.getRoundTripTime(), 0.001);
+    }
+
+    @Test
+    public void payloadSizeLimitsBatch() {
+        AdaptiveBatchController controller = controller(100);
+        // 每个数据点1000字节，100KB最多100个
+        controller.onBatch(100, 100000, 10000);
+        assertEquals(1000.0, controller.getBytesPerPoint(), 0.001);
+        assertEquals(100, controller.getBatchSize());
+
+        // 数据点变小后批次可以继续增大
+        for (int i = 0; i < 50; i++) {
+            controller.onBatch(controller.getBatchSize(), controller.getBatchSize() * 50, 10000);
+        }
+        assertEquals(1000, controller.getBatchSize());
+    }
+}
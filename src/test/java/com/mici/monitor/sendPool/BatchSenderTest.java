@@ -0,0 +1,33 @@
+package com.mici.monitor.sendPool;
+
+import com.mici.monitor.exception.HttpClientException;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchSenderTest {
+
+    @Test
+    public void ioErrorsAreRetried() {
+        assertTrue(BatchSender.isRetryable(new HttpClientException(new ExecutionException(new ConnectException()))));
+        assertTrue(BatchSender.isRetryable(new HttpClientException(new ExecutionException(new SocketTimeoutException()))));
+    }
+
+    @Test
+    public void interruptsCancellationsAndShutdownAreNotRetried() {
+        assertFalse(BatchSender.isRetryable(new HttpClientException(new InterruptedException())));
+        assertFalse(BatchSender.isRetryable(new HttpClientException(new CancellationException())));
+        assertFalse(BatchSender.isRetryable(new HttpClientException(new ExecutionException(new InterruptedIOException()))));
+        assertFalse(BatchSender.isRetryable(new HttpClientException(new ExecutionException(new ClosedByInterruptException()))));
+        // IO reactor已经关闭
+        assertFalse(BatchSender.isRetryable(new HttpClientException(new IllegalStateException("Request cannot be executed; I/O reactor status: STOPPED"))));
+    }
+}
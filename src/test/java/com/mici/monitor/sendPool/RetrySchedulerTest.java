@@ -0,0 +1,94 @@
+package com.mici.monitor.sendPool;
+
+import com.mici.monitor.serialize.Payload;
+import com.mici.monitor.stats.ClientStats;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetrySchedulerTest {
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private static Batch batch(int attempts) {
+        Batch batch = new Batch(new Payload(), 10);
+        for (int i = 0; i < attempts; i++) {
+            batch.incrementAttempts();
+        }
+        return batch;
+    }
+
+    @Test
+    public void backoffDoublesWithJitterUpToTheMaximum() {
+        RetryScheduler scheduler = new RetryScheduler(10, 100, 1000, new ClientStats());
+        try {
+            for (int i = 0; i < 100; i++) {
+                long first = scheduler.backoff(1);
+                assertTrue(first >= 50 && first <= 100);
+                long third = scheduler.backoff(3);
+                assertTrue(third >= 200 && third <= 400);
+                long capped = scheduler.backoff(10);
+                assertTrue(capped >= 500 && capped <= 1000);
+                // 次数很大时不会移位溢出
+                long huge = scheduler.backoff(Integer.MAX_VALUE);
+                assertTrue(huge >= 500 && huge <= 1000);
+            }
+        } finally {
+            scheduler.stop(true);
+        }
+    }
+
+    @Test
+    public void fullRetryBufferRejects() {
+        RetryScheduler scheduler = new RetryScheduler(2, 60000, 60000, new ClientStats());
+        try {
+            assertTrue(scheduler.schedule(batch(1), NOOP));
+            assertTrue(scheduler.schedule(batch(1), NOOP));
+            assertFalse(scheduler.schedule(batch(1), NOOP));
+            assertEquals(2, scheduler.getPending());
+        } finally {
+            scheduler.stop(true);
+        }
+    }
+
+    @Test
+    public void scheduledRetryRunsAndFreesItsSlot() throws InterruptedException {
+        RetryScheduler scheduler = new RetryScheduler(1, 1, 1, new ClientStats());
+        final CountDownLatch ran = new CountDownLatch(1);
+        try {
+            assertTrue(scheduler.schedule(batch(1), new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                }
+            }));
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && scheduler.getPending() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, scheduler.getPending());
+        } finally {
+            scheduler.stop(true);
+        }
+    }
+
+    @Test
+    public void forceStopDropsWaitingRetries() {
+        ClientStats stats = new ClientStats();
+        RetryScheduler scheduler = new RetryScheduler(10, 60000, 60000, stats);
+        assertTrue(scheduler.schedule(batch(1), NOOP));
+        assertTrue(scheduler.schedule(batch(1), NOOP));
+        scheduler.stop(true);
+        assertEquals(20, stats.getPointsDropped());
+        assertEquals(0, scheduler.getPending());
+        assertFalse(scheduler.schedule(batch(1), NOOP));
+    }
+}
@@ -0,0 +1,137 @@
+package com.mici.monitor.serialize;
+
+import com.mici.monitor.Metric;
+import com.mici.monitor.ValueType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMetricCodecTest {
+
+    @Test
+    public void roundTripsRegularSeries() throws IOException {
+        List<Metric> batch = new ArrayList<Metric>();
+        long start = 1700000000000L;
+        for (int i = 0; i < 100; i++) {
+            for (int host = 0; host < 5; host++) {
+                batch.add(metric("sys.cpu", host, start + i * 10000L, i % 2 == 0 ? (Object) (long) i : (Object) (i * 0.5)));
+            }
+        }
+        assertRoundTrip(batch);
+    }
+
+    @Test
+    public void roundTripsSpecialValues() throws IOException {
+        List<Metric> batch = new ArrayList<Metric>();
+        double[] doubles = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, Double.MAX_VALUE, 1e-300, 3.14};
+        for (int i = 0; i < doubles.length; i++) {
+            batch.add(metric("edge.double", 0, 1000L - i * 999999999L, doubles[i]));
+        }
+        long[] longs = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1L << 40, Long.MIN_VALUE, 7};
+        for (int i = 0; i < longs.length; i++) {
+            batch.add(metric("edge.long", 0, i % 2 == 0 ? Long.MAX_VALUE / 2 : -Long.MAX_VALUE / 2, longs[i]));
+        }
+        assertRoundTrip(batch);
+    }
+
+    @Test
+    public void roundTripsRandomBatches() throws IOException {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<Metric> batch = new ArrayList<Metric>();
+            int size = 1 + random.nextInt(300);
+            for (int i = 0; i < size; i++) {
+                Object value = random.nextBoolean() ? (Object) random.nextLong() : (Object) (random.nextBoolean()
+                        ? random.nextDouble() * random.nextInt(1000) : Double.longBitsToDouble(random.nextLong()));
+                long timestamp = random.nextBoolean() ? random.nextLong() : 1700000000000L + random.nextInt(100000);
+                Metric metric = metric("fuzz." + random.nextInt(3), random.nextInt(4), timestamp, value);
+                if (random.nextInt(10) == 0) {
+                    metric.setGranularity("1m");
+                }
+                batch.add(metric);
+            }
+            assertRoundTrip(batch);
+        }
+    }
+
+    @Test
+    public void regularSeriesAreMuchSmallerThanJson() throws IOException {
+        List<Metric> batch = new ArrayList<Metric>();
+        for (int i = 0; i < 100; i++) {
+            for (int host = 0; host < 50; host++) {
+                batch.add(metric("sys.req.count", host, 1700000000000L + i * 10000L, (long) (1000 + i * 3)));
+            }
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new MetricEncoder().encode(batch, json);
+        int binary = encode(batch).length;
+        assertTrue("json " + json.size() + " binary " + binary, json.size() > binary * 10);
+    }
+
+    @Test
+    public void supportsOnlyNumericPointsWithoutVersion() {
+        Metric text = new Metric("text", "value");
+        Metric versioned = new Metric("versioned", 1L);
+        versioned.setVersion(3L);
+        assertTrue(BinaryMetricEncoder.supports(Collections.singletonList(new Metric("n", 1.5))));
+        assertFalse(BinaryMetricEncoder.supports(Arrays.asList(new Metric("n", 1L), text)));
+        assertFalse(BinaryMetricEncoder.supports(Collections.singletonList(versioned)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherPayloads() throws IOException {
+        BinaryMetricDecoder.decode(new ByteArrayInputStream("[{\"metric\":\"x\"}]".getBytes("UTF-8")));
+    }
+
+    private static Metric metric(String name, int host, long timestamp, Object value) {
+        Map<String, String> tags = new HashMap<String, String>();
+        tags.put("host", "host-" + host);
+        Metric metric = new Metric(name, value, tags);
+        metric.setTimestamp(timestamp);
+        return metric;
+    }
+
+    private static byte[] encode(List<Metric> batch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryMetricEncoder().encode(batch, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码结果按时间线分组，与原批次比较时按每条时间线内的顺序比较
+     */
+    private static void assertRoundTrip(List<Metric> batch) throws IOException {
+        List<Metric> decoded = BinaryMetricDecoder.decode(new ByteArrayInputStream(encode(batch)));
+        assertEquals(group(batch), group(decoded));
+    }
+
+    private static Map<String, List<String>> group(List<Metric> metrics) {
+        Map<String, List<String>> groups = new HashMap<String, List<String>>();
+        for (Metric metric : metrics) {
+            String key = metric.getName() + metric.getTags() + metric.getGranularity() + metric.getValueType();
+            List<String> points = groups.get(key);
+            if (points == null) {
+                points = new ArrayList<String>();
+                groups.put(key, points);
+            }
+            long bits = metric.getValueType() == ValueType.DOUBLE
+                    ? Double.doubleToRawLongBits(metric.getDoubleValue()) : metric.getLongValue();
+            points.add(metric.getTimestamp() + "=" + bits);
+        }
+        return groups;
+    }
+}
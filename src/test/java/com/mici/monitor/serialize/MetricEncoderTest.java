@@ -0,0 +1,173 @@
+package com.mici.monitor.serialize;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.mici.monitor.Metric;
+import com.mici.monitor.SeriesKey;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricEncoderTest {
+
+    private static byte[] encodeBytes(MetricEncoder encoder, List<Metric> metrics) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(metrics, out);
+        return out.toByteArray();
+    }
+
+    private static JSONArray encode(Metric... metrics) throws IOException {
+        return JSON.parseArray(new String(encodeBytes(new MetricEncoder(), Arrays.asList(metrics)), "UTF-8"));
+    }
+
+    private static Map<String, String> tags(String... keyValues) {
+        Map<String, String> tags = new HashMap<String, String>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.put(keyValues[i], keyValues[i + 1]);
+        }
+        return tags;
+    }
+
+    @Test
+    public void escapesControlCharactersAndQuotes() throws IOException {
+        StringBuilder control = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            control.append(c);
+        }
+        String name = "a\"b\\c/" + control + "\u007f";
+        String tagValue = "line1\nline2\t\"quoted\"";
+        Metric metric = new Metric(name, 1L, tags("k\"ey", tagValue));
+        metric.setTimestamp(1000L);
+
+        JSONObject parsed = encode(metric).getJSONObject(0);
+        assertEquals(name, parsed.getString("metric"));
+        assertEquals(tagValue, parsed.getJSONObject("tags").getString("k\"ey"));
+    }
+
+    @Test
+    public void encodesNonAsciiAsUtf8() throws IOException {
+        // 两字节、三字节和需要代理对的四字节字符
+        String name = "é中😀x𝄞";
+        Metric metric = new Metric(name, 1L, tags("tag", "🚀"));
+        byte[] bytes = encodeBytes(new MetricEncoder(), Collections.singletonList(metric));
+        String json = new String(bytes, "UTF-8");
+        assertTrue(json.contains(name));
+
+        JSONObject parsed = JSON.parseArray(json).getJSONObject(0);
+        assertEquals(name, parsed.getString("metric"));
+        assertEquals("🚀", parsed.getJSONObject("tags").getString("tag"));
+
+        // 不成对的代理字符和String.getBytes一致
+        Metric unpaired = new Metric("a\uD83Db", 1L);
+        String encoded = new String(encodeBytes(new MetricEncoder(), Collections.singletonList(unpaired)), "UTF-8");
+        assertEquals("a?b", JSON.parseArray(encoded).getJSONObject(0).getString("metric"));
+    }
+
+    @Test
+    public void encodesValuesOfEveryType() throws IOException {
+        JSONArray parsed = encode(
+                new Metric("long", Long.MIN_VALUE),
+                new Metric("double", 0.25d),
+                new Metric("nan", Double.NaN),
+                new Metric("inf", Double.NEGATIVE_INFINITY),
+                new Metric("decimal", (Object) new BigDecimal("12345678901234567890.5")),
+                new Metric("integer", (Object) 42),
+                new Metric("bool", (Object) Boolean.TRUE),
+                new Metric("string", (Object) "text"),
+                new Metric("null", (Object) null));
+
+        assertEquals(Long.MIN_VALUE, parsed.getJSONObject(0).getLongValue("value"));
+        assertEquals(0.25d, parsed.getJSONObject(1).getDoubleValue("value"), 0);
+        // JSON不支持NaN和Infinity，输出null
+        assertTrue(parsed.getJSONObject(2).containsKey("value"));
+        assertNull(parsed.getJSONObject(2).get("value"));
+        assertNull(parsed.getJSONObject(3).get("value"));
+        assertEquals(new BigDecimal("12345678901234567890.5"), parsed.getJSONObject(4).getBigDecimal("value"));
+        assertEquals(42, parsed.getJSONObject(5).get("value"));
+        assertEquals(Boolean.TRUE, parsed.getJSONObject(6).get("value"));
+        assertEquals("text", parsed.getJSONObject(7).get("value"));
+        assertNull(parsed.getJSONObject(8).get("value"));
+    }
+
+    @Test
+    public void encodesTagsGranularityAndVersion() throws IOException {
+        Metric metric = new Metric("m", 3L, tags("host", "a", "dc", "b"));
+        metric.setTimestamp(1700000000000L);
+        metric.setGranularity("1m");
+        metric.setVersion(7L);
+        Metric plain = new Metric("plain", 4L);
+
+        JSONArray parsed = encode(metric, plain);
+        JSONObject first = parsed.getJSONObject(0);
+        assertEquals(1700000000000L, first.getLongValue("timestamp"));
+        assertEquals(tags("host", "a", "dc", "b"), toStringMap(first.getJSONObject("tags")));
+        assertEquals("1m", first.getString("granularity"));
+        assertEquals(7L, first.getLongValue("version"));
+
+        JSONObject second = parsed.getJSONObject(1);
+        assertTrue(second.getJSONObject("tags").isEmpty());
+        assertFalse(second.containsKey("granularity"));
+        assertFalse(second.containsKey("version"));
+    }
+
+    @Test
+    public void internedPrefixMatchesDirectEncoding() throws IOException {
+        Map<String, String> tags = tags("host", "a\"1", "region", "中");
+        SeriesKey key = SeriesKey.of("prefix.test", tags);
+        assertTrue(key.hasEncodedPrefix());
+
+        // 按name和tags构造的Metric没有SeriesKey，和不驻留的时间线一样直接写出name和tags
+        Metric interned = new Metric(key, 5L);
+        Metric direct = new Metric("prefix.test", 5L, tags);
+        interned.setTimestamp(1000L);
+        direct.setTimestamp(1000L);
+        assertNull(direct.getSeriesKey());
+
+        JSONArray parsed = encode(interned, direct);
+        assertEquals(parsed.getJSONObject(0), parsed.getJSONObject(1));
+        assertEquals(tags, toStringMap(parsed.getJSONObject(0).getJSONObject("tags")));
+    }
+
+    @Test
+    public void encoderIsReusableAcrossBatches() throws IOException {
+        MetricEncoder encoder = new MetricEncoder();
+        List<Metric> large = new ArrayList<Metric>();
+        for (int i = 0; i < 2000; i++) {
+            Metric metric = new Metric("large.batch", (long) i, tags("i", String.valueOf(i)));
+            metric.setTimestamp(1000L);
+            large.add(metric);
+        }
+        // 超过内部缓冲区大小
+        byte[] first = encodeBytes(encoder, large);
+        assertTrue(first.length > 8192);
+        assertEquals(2000, JSON.parseArray(new String(first, "UTF-8")).size());
+
+        List<Metric> small = Collections.singletonList(large.get(0));
+        byte[] second = encodeBytes(encoder, small);
+        assertArrayEquals(encodeBytes(new MetricEncoder(), small), second);
+        assertArrayEquals(first, encodeBytes(encoder, large));
+    }
+
+    private static Map<String, String> toStringMap(JSONObject object) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            map.put(entry.getKey(), (String) entry.getValue());
+        }
+        return map;
+    }
+}
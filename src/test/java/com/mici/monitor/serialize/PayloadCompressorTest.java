@@ -0,0 +1,124 @@
+package com.mici.monitor.serialize;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PayloadCompressorTest {
+    private static final int THRESHOLD = 1024;
+
+    private final PayloadCompressor compressor = new PayloadCompressor(Deflater.DEFAULT_COMPRESSION,
+            Deflater.DEFAULT_STRATEGY, THRESHOLD);
+
+    @After
+    public void tearDown() {
+        compressor.end();
+    }
+
+    private static byte[] data(int size, long seed) {
+        // 可压缩的文本，夹杂随机字节
+        Random random = new Random(seed);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = i % 7 == 0 ? (byte) random.nextInt() : (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private Payload compress(byte[] data) throws IOException {
+        compressor.begin(new Payload());
+        // 按不同大小分多次写入，包括单字节写入
+        Random random = new Random(data.length);
+        int offset = 0;
+        while (offset < data.length) {
+            if (random.nextInt(4) == 0) {
+                compressor.write(data[offset++]);
+            } else {
+                int len = Math.min(data.length - offset, 1 + random.nextInt(3000));
+                compressor.write(data, offset, len);
+                offset += len;
+            }
+        }
+        return compressor.finish();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private void assertStored(byte[] data) throws IOException {
+        Payload payload = compress(data);
+        try {
+            assertNull(payload.getContentEncoding());
+            assertArrayEquals(data, payload.toByteArray());
+        } finally {
+            payload.release();
+        }
+    }
+
+    private void assertGzipped(byte[] data) throws IOException {
+        Payload payload = compress(data);
+        try {
+            assertEquals(PayloadCompressor.GZIP, payload.getContentEncoding());
+            assertArrayEquals(data, gunzip(payload.toByteArray()));
+        } finally {
+            payload.release();
+        }
+    }
+
+    @Test
+    public void payloadsUpToThresholdAreNotCompressed() throws IOException {
+        assertStored(new byte[0]);
+        assertStored(data(THRESHOLD - 1, 1));
+        assertStored(data(THRESHOLD, 2));
+    }
+
+    @Test
+    public void payloadsAboveThresholdRoundTripThroughGzip() throws IOException {
+        assertGzipped(data(THRESHOLD + 1, 3));
+        assertGzipped(data(100000, 4));
+    }
+
+    @Test
+    public void instanceIsReusable() throws IOException {
+        byte[] first = data(50000, 5);
+        byte[] second = data(20000, 6);
+        assertGzipped(first);
+        assertGzipped(second);
+        // 压缩之后的小数据不受上一次的影响
+        assertStored(data(THRESHOLD, 7));
+        assertGzipped(first);
+
+        Payload again = compress(first);
+        Payload fresh;
+        PayloadCompressor other = new PayloadCompressor(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, THRESHOLD);
+        try {
+            other.begin(new Payload());
+            other.write(first, 0, first.length);
+            fresh = other.finish();
+        } finally {
+            other.end();
+        }
+        assertArrayEquals(fresh.toByteArray(), again.toByteArray());
+        again.release();
+        fresh.release();
+    }
+}
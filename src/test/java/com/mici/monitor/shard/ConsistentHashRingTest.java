@@ -0,0 +1,92 @@
+package com.mici.monitor.shard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+    private static final int KEYS = 100000;
+
+    private static List<String> nodes(int count) {
+        List<String> nodes = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            nodes.add("10.0.0." + (i + 1) + ":8242");
+        }
+        return nodes;
+    }
+
+    private static int hash(int key) {
+        // 和SeriesKey一样按name和tags计算hash
+        return 31 * "sys.cpu".hashCode() + Collections.singletonMap("host", "host-" + key).hashCode();
+    }
+
+    private static Map<String, Integer> distribution(ConsistentHashRing<String> ring) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            String node = ring.get(hash(i));
+            Integer count = counts.get(node);
+            counts.put(node, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    @Test
+    public void keysAreSpreadEvenly() {
+        for (int nodeCount = 2; nodeCount <= 8; nodeCount *= 2) {
+            ConsistentHashRing<String> ring = new ConsistentHashRing<String>(nodes(nodeCount), 160);
+            Map<String, Integer> counts = distribution(ring);
+            assertEquals(nodeCount, counts.size());
+            double expected = (double) KEYS / nodeCount;
+            for (int count : counts.values()) {
+                assertTrue(counts.toString(), Math.abs(count - expected) < expected * 0.2);
+            }
+        }
+    }
+
+    @Test
+    public void removingNodeOnlyMovesItsKeys() {
+        List<String> nodes = nodes(4);
+        ConsistentHashRing<String> ring = new ConsistentHashRing<String>(nodes, 160);
+        String removed = nodes.get(2);
+        List<String> remaining = new ArrayList<String>(nodes);
+        remaining.remove(removed);
+        ConsistentHashRing<String> smaller = new ConsistentHashRing<String>(remaining, 160);
+
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.get(hash(i));
+            if (!before.equals(removed)) {
+                assertEquals(before, smaller.get(hash(i)));
+            }
+        }
+    }
+
+    @Test
+    public void lookupIsStable() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<String>(nodes(3), 160);
+        ConsistentHashRing<String> same = new ConsistentHashRing<String>(nodes(3), 160);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.get(hash(i)), same.get(hash(i)));
+        }
+        ConsistentHashRing<String> single = new ConsistentHashRing<String>(Arrays.asList("only"), 1);
+        assertEquals("only", single.get(Integer.MIN_VALUE));
+        assertEquals("only", single.get(42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyNodesAreRejected() {
+        new ConsistentHashRing<String>(Collections.<String>emptyList(), 160);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void virtualNodesMustBePositive() {
+        new ConsistentHashRing<String>(nodes(2), 0);
+    }
+}